@@ -0,0 +1,13 @@
+#!/bin/bash
+export DB_NAME=$USER"_DB"
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd)"
+# Indicate the path of the java compiler to use
+export JAVA_HOME=/usr/csshare/pkgs/jdk1.7.0_17
+export PATH=$JAVA_HOME/bin:$PATH
+
+# compile the java programs
+javac -d $DIR/../classes -cp $DIR/../lib/pg73jdbc3.jar $DIR/../src/*.java
+
+# benchmark every data access path against the loaded database, e.g.
+#   benchmark.sh time=10 only=login,isFriend results=/tmp/bench.csv
+java -cp $DIR/../classes:$DIR/../lib/pg73jdbc3.jar Benchmark $DB_NAME $PGPORT $USER "$@"
@@ -0,0 +1,12 @@
+#!/bin/bash
+export DB_NAME=$USER"_DB"
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd)"
+# Indicate the path of the java compiler to use
+export JAVA_HOME=/usr/csshare/pkgs/jdk1.7.0_17
+export PATH=$JAVA_HOME/bin:$PATH
+
+# compile the java programs
+javac -d $DIR/../classes -cp $DIR/../lib/pg73jdbc3.jar $DIR/../src/*.java
+
+# seed the database from the CSVs in data/ (run after create_tables.sql)
+java -cp $DIR/../classes:$DIR/../lib/pg73jdbc3.jar BulkLoader $DB_NAME $PGPORT $USER $DIR/../../data
@@ -0,0 +1,13 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd)"
+# Indicate the path of the java compiler to use
+export JAVA_HOME=/usr/csshare/pkgs/jdk1.7.0_17
+export PATH=$JAVA_HOME/bin:$PATH
+
+# compile the java programs
+javac -d $DIR/../classes -cp $DIR/../lib/pg73jdbc3.jar $DIR/../src/*.java
+
+# write a synthetic data set in the data/ layout, e.g.
+#   gen_data.sh out=/tmp/big users=1000000 degree=20 exponent=2.3 messages=10
+# then load it with: java -cp ... BulkLoader $DB_NAME $PGPORT $USER /tmp/big
+java -Xmx2g -cp $DIR/../classes DataGenerator "$@"
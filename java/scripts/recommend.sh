@@ -0,0 +1,13 @@
+#!/bin/bash
+export DB_NAME=$USER"_DB"
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd)"
+# Indicate the path of the java compiler to use
+export JAVA_HOME=/usr/csshare/pkgs/jdk1.7.0_17
+export PATH=$JAVA_HOME/bin:$PATH
+
+# compile the java programs
+javac -d $DIR/../classes -cp $DIR/../lib/pg73jdbc3.jar $DIR/../src/*.java
+
+# rebuild the "people you may know" table, e.g. nightly from cron:
+#   recommend.sh k=10 threads=8
+java -Xmx2g -cp $DIR/../classes:$DIR/../lib/pg73jdbc3.jar Recommender $DB_NAME $PGPORT $USER "$@"
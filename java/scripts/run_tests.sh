@@ -0,0 +1,15 @@
+#Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd)"
+# Indicate the path of the java compiler to use
+export JAVA_HOME=/usr/csshare/pkgs/jdk1.7.0_17
+export PATH=$JAVA_HOME/bin:$PATH
+
+# compile the java programs and their tests; the tests need no database
+javac -d $DIR/../classes -cp $DIR/../lib/pg73jdbc3.jar $DIR/../src/*.java $DIR/../test/*.java || exit 1
+
+# run every test class, stopping at the first failure
+for t in $DIR/../test/*Test.java; do
+   java -cp $DIR/../classes:$DIR/../lib/pg73jdbc3.jar $(basename $t .java) || exit 1
+done
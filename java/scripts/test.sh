@@ -8,7 +8,7 @@ export PATH=$JAVA_HOME/bin:$PATH
 export CLASSPATH=$CLASSPATH:$PWD/pg73jdbc3.jar
 
 # compile the java program
-javac ProfNetwork.java
+javac *.java
 
 #run the java program
 #Use your database name, port number and login
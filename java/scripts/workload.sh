@@ -0,0 +1,14 @@
+#!/bin/bash
+export DB_NAME=$USER"_DB"
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd)"
+# Indicate the path of the java compiler to use
+export JAVA_HOME=/usr/csshare/pkgs/jdk1.7.0_17
+export PATH=$JAVA_HOME/bin:$PATH
+
+# compile the java programs
+javac -d $DIR/../classes -cp $DIR/../lib/pg73jdbc3.jar $DIR/../src/*.java
+
+# drive the menus with concurrent simulated users, e.g.
+#   workload.sh users=200 pool=20 time=60 think=50
+#   workload.sh users=20 sessions=recorded_sessions.txt
+java -cp $DIR/../classes:$DIR/../lib/pg73jdbc3.jar WorkloadDriver $DB_NAME $PGPORT $USER "$@"
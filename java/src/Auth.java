@@ -0,0 +1,193 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * This class checks and stores login credentials. USR.password holds a
+ * salted PBKDF2 hash, never the password:
+ *
+ *   pbkdf2$<iterations>$<salt, hex>$<hash, hex>
+ *
+ * The cost is set by the profnetwork.passwordIterations system property
+ * (default 20000). It is recorded in every hash, so raising it only
+ * changes new hashes. Older or plaintext (legacy) passwords are rehashed
+ * on their owner's next successful login.
+ *
+ * Keeping repeated logins cheap:
+ *   - Successful logins are cached for CACHE_MILLIS as a salted SHA-256 of
+ *     the credentials. The same credentials inside that window are checked
+ *     against the cache, with no PBKDF2 and no query.
+ *   - Every other attempt costs a token from two RateLimiter buckets: one
+ *     for the user and one for the client address, when there is one.
+ *     Bursts are cut off before they reach the hash or the database.
+ *   - A verification is one query on the usr_login index, which covers
+ *     the password column.
+ */
+public class Auth {
+
+   /**
+    * The outcome of a login attempt.
+    */
+   public enum Result { OK, FAILED, THROTTLED }
+
+   private static final String ALGORITHM = "PBKDF2WithHmacSHA1";
+   private static final int ITERATIONS = Integer.getInteger("profnetwork.passwordIterations", 20000);
+   private static final int SALT_BYTES = 16;
+   private static final int HASH_BITS = 160;
+
+   // how long a successful login is remembered
+   private static final long CACHE_MILLIS = 10 * 60 * 1000;
+
+   // login attempts that miss the cache: a burst of 5 per user, then one every 12 s;
+   // a burst of 30 per client address, then one a second
+   private static final RateLimiter perUser = new RateLimiter(5, 12000);
+   private static final RateLimiter perSource = new RateLimiter(30, 1000);
+
+   private static final SecureRandom random = new SecureRandom();
+
+   // per process salt for the login cache, so its entries are useless outside it
+   private static final byte[] cacheSalt = new byte[SALT_BYTES];
+   static {
+      random.nextBytes(cacheSalt);
+   }
+
+   /*
+    * A remembered login: the digest of the credentials and when it lapses.
+    */
+   private static class Cached {
+      final byte[] digest;
+      final long expires;
+
+      Cached (byte[] digest, long expires) {
+         this.digest = digest;
+         this.expires = expires;
+      }
+   }//end Cached
+
+   private static final ConcurrentHashMap<String, Cached> cache = new ConcurrentHashMap<String, Cached>();
+
+   // checked against when the user does not exist, so a miss costs the same as a wrong password
+   private static final String DUMMY = hash("");
+
+   /**
+    * Checks userId's password.
+    *
+    * @param source the client address the attempt came from, null for local sessions
+    * @return OK, FAILED when the user or password is wrong, THROTTLED when
+    *         too many attempts were made lately
+    */
+   public static Result login(ProfNetwork esql, String userId, String password, String source) throws SQLException {
+      byte[] digest = cacheDigest(userId, password);
+      Cached hit = cache.get(userId);
+      if (hit != null && hit.expires > System.currentTimeMillis() && MessageDigest.isEqual(hit.digest, digest))
+         return Result.OK;
+      if (!perUser.tryAcquire(userId) || (source != null && !perSource.tryAcquire(source)))
+         return Result.THROTTLED;
+
+      List<List<String>> rows = esql.executeQueryAndReturnResult("SELECT password FROM USR WHERE userId = ?", userId);
+      String stored = rows.isEmpty() ? null : rows.get(0).get(0);
+      if (stored == null){
+         verify(password, DUMMY);
+         return Result.FAILED;
+      }//end if
+      if (!verify(password, stored))
+         return Result.FAILED;
+      if (needsRehash(stored))
+         esql.executeUpdate("UPDATE USR SET password = ? WHERE userId = ? AND password = ?", hash(password), userId, stored);
+      perUser.reset(userId);
+      cache.put(userId, new Cached(digest, System.currentTimeMillis() + CACHE_MILLIS));
+      return Result.OK;
+   }//end login
+
+   /**
+    * Forgets userId's cached login, e.g. after a password change.
+    */
+   public static void invalidate(String userId){
+      cache.remove(userId);
+   }//end invalidate
+
+   /**
+    * @return a new salted hash of password, in the USR.password format
+    */
+   public static String hash(String password){
+      byte[] salt = new byte[SALT_BYTES];
+      random.nextBytes(salt);
+      return "pbkdf2$" + ITERATIONS + "$" + hex(salt) + "$" + hex(pbkdf2(password, salt, ITERATIONS));
+   }//end hash
+
+   /**
+    * Checks password against a stored hash. A stored value that is not a
+    * hash is a legacy plaintext password and is compared as such.
+    */
+   static boolean verify(String password, String stored){
+      String[] parts = stored.split("\\$");
+      if (parts.length != 4 || !parts[0].equals("pbkdf2"))
+         return MessageDigest.isEqual(utf8(password), utf8(stored));
+      byte[] expected = unhex(parts[3]);
+      return MessageDigest.isEqual(expected, pbkdf2(password, unhex(parts[2]), Integer.parseInt(parts[1])));
+   }//end verify
+
+   private static boolean needsRehash(String stored){
+      String[] parts = stored.split("\\$");
+      return parts.length != 4 || !parts[0].equals("pbkdf2") || Integer.parseInt(parts[1]) < ITERATIONS;
+   }//end needsRehash
+
+   private static byte[] pbkdf2(String password, byte[] salt, int iterations){
+      try{
+         PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+         try{
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+         }finally{
+            spec.clearPassword();
+         }//end try
+      }catch (NoSuchAlgorithmException e){
+         throw new IllegalStateException(e);
+      }catch (InvalidKeySpecException e){
+         throw new IllegalStateException(e);
+      }//end try
+   }//end pbkdf2
+
+   private static byte[] cacheDigest(String userId, String password){
+      try{
+         MessageDigest sha = MessageDigest.getInstance("SHA-256");
+         sha.update(cacheSalt);
+         sha.update(utf8(userId));
+         sha.update((byte) 0);
+         return sha.digest(utf8(password));
+      }catch (NoSuchAlgorithmException e){
+         throw new IllegalStateException(e);
+      }//end try
+   }//end cacheDigest
+
+   private static byte[] utf8(String s){
+      try{
+         return s.getBytes("UTF-8");
+      }catch (UnsupportedEncodingException e){
+         throw new IllegalStateException(e);
+      }//end try
+   }//end utf8
+
+   private static String hex(byte[] bytes){
+      StringBuilder sb = new StringBuilder(bytes.length * 2);
+      for (byte b : bytes)
+         sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      return sb.toString();
+   }//end hex
+
+   private static byte[] unhex(String s){
+      byte[] bytes = new byte[s.length() / 2];
+      for (int i = 0; i < bytes.length; ++i)
+         bytes[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+      return bytes;
+   }//end unhex
+
+}//end Auth
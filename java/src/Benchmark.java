@@ -0,0 +1,356 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.io.BufferedReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This class measures the ProfNetwork data access paths against a running
+ * database, so a change can be judged by its throughput and tail latency.
+ *
+ * Every benchmark calls the real ProfNetwork method. The menu methods read
+ * their answers from ProfNetwork.in, so each call is fed a short script of
+ * input lines, and their screen output is discarded. Each benchmark warms up
+ * for a few seconds, then runs back to back for a fixed time while every
+ * call's latency is recorded; the report shows operations per second and the
+ * latency percentiles. A call that prints to System.err counts as an error.
+ *
+ * Parameters (users, friend pairs, inbox owners, search terms) are sampled
+ * from the loaded data up front. newMessage inserts rows; they are deleted
+ * again when the run ends.
+ *
+ * Usage: java Benchmark <dbname> <port> <user> [name=value ...]
+ */
+public class Benchmark {
+
+   // parameter rows sampled from the database for each kind of input
+   private static final int SAMPLES = 1000;
+
+   // contents of the messages newMessage sends, used to delete them afterwards
+   private static final String BENCH_MESSAGE = "benchmark message";
+
+   /**
+    * One benchmarked call; i counts calls so parameters can be cycled.
+    */
+   interface Op {
+      void run(int i) throws Exception;
+   }//end Op
+
+   /*
+    * Thrown from the scripted input once a call asks for more lines than its
+    * script has, so a menu that would loop forever ends the call instead.
+    */
+   static class ScriptExhausted extends Error {
+      private static final long serialVersionUID = 1L;
+
+      ScriptExhausted() {
+         super("benchmark script exhausted");
+      }
+   }//end ScriptExhausted
+
+   /*
+    * Reader installed as ProfNetwork.in, answering from the current script.
+    */
+   private static class ScriptReader extends BufferedReader {
+      private final ArrayDeque<String> lines = new ArrayDeque<String>();
+
+      ScriptReader () {
+         super(new StringReader(""));
+      }
+
+      void script(String... next){
+         this.lines.clear();
+         this.lines.addAll(Arrays.asList(next));
+      }
+
+      public String readLine(){
+         if (this.lines.isEmpty())
+            throw new ScriptExhausted();
+         return this.lines.poll();
+      }
+   }//end ScriptReader
+
+   /*
+    * Output stream that drops everything and remembers whether it was written.
+    */
+   private static class Discard extends OutputStream {
+      boolean written;
+
+      public void write(int b){
+         this.written = true;
+      }
+
+      public void write(byte[] b, int off, int len){
+         this.written |= len > 0;
+      }
+   }//end Discard
+
+   /**
+    * Results of one benchmark.
+    */
+   static class Result {
+      final String name;
+      final long ops;
+      final long errors;
+      final double secs;
+      final long[] nanos;
+
+      Result (String name, long ops, long errors, double secs, long[] nanos) {
+         this.name = name;
+         this.ops = ops;
+         this.errors = errors;
+         this.secs = secs;
+         this.nanos = nanos;
+      }
+
+      /* latency at quantile q (0..1), in milliseconds */
+      double percentile(double q){
+         if (this.nanos.length == 0)
+            return 0;
+         int at = (int) Math.min(this.nanos.length - 1, Math.ceil(q * this.nanos.length) - 1);
+         return this.nanos[Math.max(at, 0)] / 1e6;
+      }
+
+      double mean(){
+         long sum = 0;
+         for (long n : this.nanos)
+            sum += n;
+         return this.nanos.length == 0 ? 0 : sum / 1e6 / this.nanos.length;
+      }
+   }//end Result
+
+   private final ProfNetwork esql;
+   private final double warmupSecs;
+   private final double measureSecs;
+   private final ScriptReader script = new ScriptReader();
+   private final Discard out = new Discard();
+   private final Discard err = new Discard();
+
+   public Benchmark (ProfNetwork esql, double warmupSecs, double measureSecs) {
+      this.esql = esql;
+      this.warmupSecs = warmupSecs;
+      this.measureSecs = measureSecs;
+   }//end Benchmark
+
+   public static void main (String[] args) {
+      if (args.length < 3) {
+         System.err.println ("Usage: java [-classpath <classpath>] " + Benchmark.class.getName () +
+                             " <dbname> <port> <user> [warmup=<secs>] [time=<secs>] [only=<name,...>] [results=<csv file>]");
+         return;
+      }//end if
+      double warmup = 2, time = 5;
+      String only = null, results = null;
+      ProfNetwork esql = null;
+      try{
+         for (int i = 3; i < args.length; ++i){
+            String name = args[i].substring(0, Math.max(0, args[i].indexOf('=')));
+            String value = args[i].substring(args[i].indexOf('=') + 1);
+            if (name.equals("warmup")) warmup = Double.parseDouble(value);
+            else if (name.equals("time")) time = Double.parseDouble(value);
+            else if (name.equals("only")) only = "," + value + ",";
+            else if (name.equals("results")) results = value;
+            else throw new IllegalArgumentException("unknown argument " + args[i]);
+         }//end for
+         Class.forName ("org.postgresql.Driver");
+         esql = new ProfNetwork (args[0], args[1], args[2], "");
+         Benchmark bench = new Benchmark(esql, warmup, time);
+         List<Result> done = new ArrayList<Result>();
+         for (Map.Entry<String, Op> b : bench.benchmarks().entrySet()){
+            if (only != null && !only.contains("," + b.getKey() + ","))
+               continue;
+            Result r = bench.run(b.getKey(), b.getValue());
+            print(r);
+            done.add(r);
+         }//end for
+         if (results != null)
+            save(done, results);
+      }catch (Exception e){
+         System.err.println (e.getMessage ());
+      }finally{
+         if (esql != null){
+            try{
+               esql.executeUpdate("DELETE FROM MESSAGE WHERE contents = ?", BENCH_MESSAGE);
+            }catch (Exception e){
+               System.err.println (e.getMessage ());
+            }//end try
+            esql.cleanup ();
+         }//end if
+      }//end try
+   }//end main
+
+   /*
+    * The benchmarks, in the order they run, with their parameters sampled
+    * from the database. Benchmarks without data to sample are left out.
+    */
+   Map<String, Op> benchmarks() throws Exception {
+      final List<List<String>> users = this.esql.executeQueryAndReturnResult(
+         "SELECT userId FROM USR ORDER BY random() LIMIT ?", SAMPLES);
+      // real passwords are hashed, so logins use WorkloadDriver's test accounts
+      final List<List<String>> logins = WorkloadDriver.seedLogins(this.esql, SAMPLES);
+      final List<List<String>> friends = this.esql.executeQueryAndReturnResult(
+         "SELECT userId, rtrim(connectionId) FROM CONNECTION_USR WHERE status = 'Accept' ORDER BY random() LIMIT ?", SAMPLES);
+      final List<List<String>> inboxes = this.esql.executeQueryAndReturnResult(
+         "SELECT receiverId FROM MESSAGE WHERE deleteStatus IN (0,1) GROUP BY receiverId ORDER BY random() LIMIT ?", SAMPLES);
+      final List<String> terms = new ArrayList<String>();
+      for (List<String> u : users)
+         if (u.get(0).length() >= 3)
+            terms.add(u.get(0).substring(0, 3));
+
+      Map<String, Op> all = new LinkedHashMap<String, Op>();
+      if (users.isEmpty()){
+         System.out.println("USR is empty, nothing to benchmark");
+         return all;
+      }//end if
+      final Random rnd = new Random(1);
+      all.put("login", new Op() {
+         public void run(int i){
+            List<String> u = logins.get(i % logins.size());
+            script.script(u.get(0), u.get(1));
+            if (ProfNetwork.LogIn(esql) == null)
+               System.err.println("login failed for " + u.get(0));
+         }
+      });
+      all.put("displayProf", new Op() {
+         public void run(int i){
+            ProfNetwork.displayProf(esql, users.get(i % users.size()).get(0));
+         }
+      });
+      all.put("loadProfile", new Op() {
+         public void run(int i) throws Exception {
+            ProfNetwork.loadProfile(esql, users.get(i % users.size()).get(0));
+         }
+      });
+      all.put("isFriend", new Op() {
+         public void run(int i){
+            // half known friends, half random pairs
+            if (!friends.isEmpty() && i % 2 == 0){
+               List<String> f = friends.get(i / 2 % friends.size());
+               ProfNetwork.isFriend(esql, f.get(0), f.get(1));
+            }else{
+               ProfNetwork.isFriend(esql, users.get(rnd.nextInt(users.size())).get(0), users.get(rnd.nextInt(users.size())).get(0));
+            }//end if
+         }
+      });
+      all.put("reqDashHops", new Op() {
+         public void run(int i){
+            ProfNetwork.withinHops(esql, users.get(rnd.nextInt(users.size())).get(0), users.get(rnd.nextInt(users.size())).get(0), 3);
+         }
+      });
+      all.put("searchPeople", new Op() {
+         public void run(int i) throws Exception {
+            // leave after the first page
+            script.script("9");
+            ProfNetwork.searchPeople(esql, terms.get(i % terms.size()));
+         }
+      });
+      if (!inboxes.isEmpty()){
+         all.put("inbox", new Op() {
+            public void run(int i){
+               // first page of received messages, go back, leave
+               script.script("2", "9", "9");
+               ProfNetwork.ViewMessage(esql, inboxes.get(i % inboxes.size()).get(0));
+            }
+         });
+      }//end if
+      all.put("newMessage", new Op() {
+         public void run(int i){
+            script.script(users.get((i + 1) % users.size()).get(0), BENCH_MESSAGE, "Y");
+            ProfNetwork.NewMessage(esql, users.get(i % users.size()).get(0));
+         }
+      });
+      return all;
+   }//end benchmarks
+
+   /**
+    * Warms op up, then times it for the measurement period.
+    */
+   public Result run(String name, Op op){
+      PrintStream stdout = System.out, stderr = System.err;
+      BufferedReader stdin = ProfNetwork.in;
+      System.setOut(new PrintStream(this.out));
+      System.setErr(new PrintStream(this.err));
+      ProfNetwork.in = this.script;
+      try{
+         int i = 0;
+         long end = System.nanoTime() + (long) (this.warmupSecs * 1e9);
+         while (System.nanoTime() < end)
+            call(op, i++);
+
+         long[] nanos = new long[1024];
+         long ops = 0, errors = 0;
+         long start = System.nanoTime();
+         end = start + (long) (this.measureSecs * 1e9);
+         for (long now = start; now < end; ){
+            this.err.written = false;
+            call(op, i++);
+            long after = System.nanoTime();
+            if (ops == nanos.length)
+               nanos = Arrays.copyOf(nanos, nanos.length * 2);
+            nanos[(int) ops++] = after - now;
+            if (this.err.written)
+               ++errors;
+            now = after;
+         }//end for
+         double secs = (System.nanoTime() - start) / 1e9;
+         nanos = Arrays.copyOf(nanos, (int) ops);
+         Arrays.sort(nanos);
+         return new Result(name, ops, errors, secs, nanos);
+      }finally{
+         System.setOut(stdout);
+         System.setErr(stderr);
+         ProfNetwork.in = stdin;
+      }//end try
+   }//end run
+
+   private void call(Op op, int i){
+      try{
+         op.run(i);
+      }catch (Exception e){
+         System.err.println(e.getMessage());
+      }catch (ScriptExhausted e){
+         System.err.println(e.getMessage());
+      }//end try
+   }//end call
+
+   private static boolean header = false;
+
+   private static void print(Result r){
+      if (!header){
+         System.out.println(String.format("%-14s %9s %10s %9s %9s %9s %9s %7s",
+                                          "BENCHMARK", "OPS", "OPS/SEC", "MEAN ms", "P50 ms", "P99 ms", "P99.9 ms", "ERRORS"));
+         header = true;
+      }//end if
+      System.out.println(String.format("%-14s %9d %10.1f %9.3f %9.3f %9.3f %9.3f %7d",
+                                       r.name, r.ops, r.ops / r.secs, r.mean(), r.percentile(0.5),
+                                       r.percentile(0.99), r.percentile(0.999), r.errors));
+   }//end print
+
+   /*
+    * Appends the results to a CSV file, one line per benchmark, so runs
+    * before and after a change can be compared.
+    */
+   private static void save(List<Result> results, String file) throws IOException {
+      PrintWriter w = new PrintWriter(new FileWriter(file, true));
+      try{
+         long stamp = System.currentTimeMillis();
+         for (Result r : results)
+            w.println(String.format("%d,%s,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%d",
+                                    stamp, r.name, r.ops, r.ops / r.secs, r.mean(), r.percentile(0.5),
+                                    r.percentile(0.99), r.percentile(0.999), r.errors));
+      }finally{
+         w.close();
+      }//end try
+   }//end save
+
+}//end Benchmark
@@ -0,0 +1,334 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class seeds a database from the CSV files in data/ from the client
+ * side, so the files don't have to sit on the database host as the server
+ * side COPY in load_data.sql requires.
+ *
+ * Each file is parsed on its own thread, with dates normalized to
+ * year-month-day, and handed in batches of BATCH_ROWS through a small queue
+ * to a writer on its own connection, so parsing and loading overlap. The
+ * writer streams each batch through the driver's CopyManager when the driver
+ * has one, and falls back to batched INSERTs otherwise. USR is loaded first
+ * since the other tables reference it; the rest load in parallel.
+ *
+ * Usage: java BulkLoader <dbname> <port> <user> <dataDir>
+ */
+public class BulkLoader {
+
+   // rows per COPY / INSERT batch
+   private static final int BATCH_ROWS = 20000;
+
+   // parsed batches waiting for the writer, per table
+   private static final int QUEUE_BATCHES = 4;
+
+   private static final List<String[]> END = new ArrayList<String[]>();
+
+   /**
+    * One CSV file and the table columns its fields go to, in order.
+    */
+   static class Table {
+      final String file;
+      final String table;
+      final String[] columns;
+      final boolean[] dates;
+
+      Table (String file, String table, String columns, String dateColumns) {
+         this.file = file;
+         this.table = table;
+         this.columns = columns.split(",");
+         this.dates = new boolean[this.columns.length];
+         for (String d : dateColumns.split(","))
+            for (int i = 0; i < this.columns.length; ++i)
+               if (this.columns[i].equals(d))
+                  this.dates[i] = true;
+      }
+   }//end Table
+
+   static final Table USR = new Table("USR.csv", "USR", "userId,password,email,name,dateOfBirth", "dateOfBirth");
+   static final Table[] DEPENDENT = {
+      new Table("Connection.csv", "CONNECTION_USR", "userId,connectionId,status", ""),
+      new Table("Work_Ex.csv", "WORK_EXPR", "userId,company,role,location,startDate,endDate", "startDate,endDate"),
+      new Table("Edu_Det.csv", "EDUCATIONAL_DETAILS", "userId,instituitionName,major,degree,startDate,endDate", "startDate,endDate"),
+      new Table("Message.csv", "MESSAGE", "msgId,senderId,receiverId,contents,sendTime,deleteStatus,status", "")
+   };
+
+   private final String url;
+   private final String user;
+   private final String passwd;
+   private final File dataDir;
+
+   public BulkLoader (String url, String user, String passwd, File dataDir) {
+      this.url = url;
+      this.user = user;
+      this.passwd = passwd;
+      this.dataDir = dataDir;
+   }//end BulkLoader
+
+   public static void main (String[] args) {
+      if (args.length != 4) {
+         System.err.println ("Usage: java [-classpath <classpath>] " + BulkLoader.class.getName () +
+                             " <dbname> <port> <user> <dataDir>");
+         return;
+      }//end if
+      try{
+         Class.forName ("org.postgresql.Driver");
+         String url = "jdbc:postgresql://localhost:" + args[1] + "/" + args[0];
+         new BulkLoader(url, args[2], "", new File(args[3])).loadAll();
+      }catch (Exception e){
+         System.err.println (e.getMessage ());
+      }//end try
+   }//end main
+
+   /**
+    * Loads USR, then every other table whose file exists, in parallel.
+    */
+   public void loadAll() throws Exception {
+      long start = System.nanoTime();
+      long rows = load(USR);
+      ExecutorService pool = Executors.newFixedThreadPool(DEPENDENT.length);
+      try{
+         List<Future<Long>> loads = new ArrayList<Future<Long>>();
+         for (final Table t : DEPENDENT){
+            loads.add(pool.submit(new Callable<Long>() {
+               public Long call() throws Exception {
+                  return load(t);
+               }
+            }));
+         }//end for
+         for (Future<Long> f : loads)
+            rows += f.get();
+      }finally{
+         pool.shutdown();
+      }//end try
+      report("total", rows, System.nanoTime() - start);
+   }//end loadAll
+
+   /**
+    * Loads one file into its table, parsing on a separate thread.
+    *
+    * @return the number of rows loaded
+    */
+   public long load(final Table t) throws Exception {
+      final File f = new File(this.dataDir, t.file);
+      if (!f.exists()){
+         System.out.println(t.file + ": not found, skipping " + t.table);
+         return 0;
+      }//end if
+      long start = System.nanoTime();
+      final BlockingQueue<List<String[]>> queue = new ArrayBlockingQueue<List<String[]>>(QUEUE_BATCHES);
+      final Exception[] parseError = { null };
+      Thread parser = new Thread(new Runnable() {
+         public void run(){
+            try{
+               parse(f, t, queue);
+            }catch (Exception e){
+               parseError[0] = e;
+            }finally{
+               try{
+                  queue.put(END);
+               }catch (InterruptedException e){
+                  Thread.currentThread().interrupt();
+               }//end try
+            }//end try
+         }
+      }, "parse-" + t.table);
+      parser.setDaemon(true);
+      parser.start();
+
+      Connection conn = DriverManager.getConnection(this.url, this.user, this.passwd);
+      long rows = 0;
+      try{
+         conn.setAutoCommit(false);
+         BatchWriter writer = copyWriter(conn, t);
+         if (writer == null)
+            writer = new InsertWriter(conn, t);
+         for (List<String[]> batch = queue.take(); batch != END; batch = queue.take())
+            rows += writer.write(batch);
+         parser.join();
+         if (parseError[0] != null)
+            throw parseError[0];
+         conn.commit();
+      }catch (Exception e){
+         conn.rollback();
+         throw e;
+      }finally{
+         conn.close();
+      }//end try
+      report(t.table, rows, System.nanoTime() - start);
+      return rows;
+   }//end load
+
+   private static void report(String what, long rows, long nanos){
+      double secs = nanos / 1e9;
+      System.out.println(String.format("%-20s %9d rows in %6.2fs (%.0f rows/sec)", what, rows, secs, rows / Math.max(secs, 1e-9)));
+   }//end report
+
+   /*
+    * Reads f, skipping its header, and queues its rows in batches.
+    */
+   static void parse(File f, Table t, BlockingQueue<List<String[]>> queue) throws IOException, InterruptedException {
+      BufferedReader r = new BufferedReader(new FileReader(f), 1 << 16);
+      try{
+         r.readLine();
+         List<String[]> batch = new ArrayList<String[]>(BATCH_ROWS);
+         for (String line = r.readLine(); line != null; line = r.readLine()){
+            if (line.length() == 0)
+               continue;
+            String[] fields = splitCsv(line, t.columns.length);
+            for (int i = 0; i < fields.length; ++i)
+               if (t.dates[i])
+                  fields[i] = normalizeDate(fields[i]);
+            batch.add(fields);
+            if (batch.size() == BATCH_ROWS){
+               queue.put(batch);
+               batch = new ArrayList<String[]>(BATCH_ROWS);
+            }//end if
+         }//end for
+         if (!batch.isEmpty())
+            queue.put(batch);
+      }finally{
+         r.close();
+      }//end try
+   }//end parse
+
+   /*
+    * Splits one CSV line into n fields; "quoted" fields may hold commas and
+    * doubled quotes. Missing trailing fields and empty fields are null.
+    */
+   static String[] splitCsv(String line, int n){
+      String[] out = new String[n];
+      StringBuilder field = new StringBuilder();
+      int col = 0;
+      boolean quoted = false, wasQuoted = false;
+      for (int i = 0; i < line.length(); ++i){
+         char c = line.charAt(i);
+         if (quoted){
+            if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"'){
+               field.append('"');
+               ++i;
+            }else if (c == '"'){
+               quoted = false;
+            }else{
+               field.append(c);
+            }//end if
+         }else if (c == '"'){
+            quoted = wasQuoted = true;
+         }else if (c == ','){
+            if (col < n)
+               out[col] = field.length() == 0 && !wasQuoted ? null : field.toString();
+            ++col;
+            field.setLength(0);
+            wasQuoted = false;
+         }else if (c != '\r'){
+            field.append(c);
+         }//end if
+      }//end for
+      if (col < n)
+         out[col] = field.length() == 0 && !wasQuoted ? null : field.toString();
+      return out;
+   }//end splitCsv
+
+   /*
+    * Turns 1949/07/27 (and 1949.07.27) into 1949-07-27.
+    */
+   static String normalizeDate(String d){
+      if (d == null)
+         return null;
+      return d.trim().replace('/', '-').replace('.', '-');
+   }//end normalizeDate
+
+   /**
+    * Loads batches of parsed rows into one table on one connection.
+    */
+   interface BatchWriter {
+      int write(List<String[]> batch) throws Exception;
+   }//end BatchWriter
+
+   /*
+    * Looks up org.postgresql.copy.CopyManager reflectively; the bundled
+    * driver predates it, newer ones have it.
+    */
+   private static BatchWriter copyWriter(Connection conn, Table t){
+      try{
+         Class<?> base = Class.forName("org.postgresql.core.BaseConnection");
+         Class<?> manager = Class.forName("org.postgresql.copy.CopyManager");
+         Constructor<?> make = manager.getConstructor(base);
+         final Object copy = make.newInstance(conn);
+         final Method copyIn = manager.getMethod("copyIn", String.class, Reader.class);
+         final String sql = "COPY " + t.table + " (" + join(t.columns) + ") FROM STDIN WITH CSV";
+         return new BatchWriter() {
+            public int write(List<String[]> batch) throws Exception {
+               StringBuilder csv = new StringBuilder(batch.size() * 64);
+               for (String[] row : batch){
+                  for (int i = 0; i < row.length; ++i){
+                     if (i > 0)
+                        csv.append(',');
+                     if (row[i] != null)
+                        csv.append('"').append(row[i].replace("\"", "\"\"")).append('"');
+                  }//end for
+                  csv.append('\n');
+               }//end for
+               return ((Number) copyIn.invoke(copy, sql, new StringReader(csv.toString()))).intValue();
+            }
+         };
+      }catch (Exception e){
+         return null;
+      }//end try
+   }//end copyWriter
+
+   /*
+    * Fallback for drivers without CopyManager: one JDBC batch per batch of rows.
+    */
+   static class InsertWriter implements BatchWriter {
+      private final PreparedStatement insert;
+
+      InsertWriter (Connection conn, Table t) throws SQLException {
+         StringBuilder values = new StringBuilder();
+         for (int i = 0; i < t.columns.length; ++i){
+            values.append(i > 0 ? ", " : "");
+            values.append(t.dates[i] ? "CAST(? AS date)" : "?");
+         }//end for
+         this.insert = conn.prepareStatement("INSERT INTO " + t.table + " (" + join(t.columns) + ") VALUES (" + values + ")");
+      }
+
+      public int write(List<String[]> batch) throws SQLException {
+         for (String[] row : batch){
+            for (int i = 0; i < row.length; ++i)
+               this.insert.setString(i + 1, row[i]);
+            this.insert.addBatch();
+         }//end for
+         this.insert.executeBatch();
+         return batch.size();
+      }
+   }//end InsertWriter
+
+   private static String join(String[] parts){
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < parts.length; ++i)
+         sb.append(i > 0 ? "," : "").append(parts[i]);
+      return sb.toString();
+   }//end join
+
+}//end BulkLoader
@@ -0,0 +1,219 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class defines a bounded pool of JDBC connections to one database.
+ * At most maxSize connections are open at once; callers borrow a connection
+ * for a single unit of work and release it right after, so many mostly idle
+ * sessions can share a handful of connections.
+ *
+ * Connections idle for longer than idleTimeout are closed by a background
+ * timer, and a connection that sat idle for a while is validated with a
+ * trivial query before it is handed out again.
+ */
+public class ConnectionPool {
+
+   // how long borrow waits for a free connection before giving up
+   private static final long BORROW_TIMEOUT_MILLIS = 30000;
+
+   // idle connections older than this are checked before reuse
+   private static final long VALIDATE_AFTER_MILLIS = 5000;
+
+   private final String url;
+   private final String user;
+   private final String passwd;
+   private final long idleTimeoutMillis;
+
+   // one permit per connection that may still be handed out
+   private final Semaphore permits;
+
+   // idle connections, most recently used first
+   private final Deque<PooledConnection> idle = new ArrayDeque<PooledConnection>();
+
+   private final Timer evictor;
+   private boolean closed = false;
+
+   /**
+    * A pooled physical connection together with its statement cache.
+    */
+   public static class PooledConnection {
+      private final Connection connection;
+      private final StatementCache statements;
+      private long lastUsed;
+
+      PooledConnection (Connection connection) {
+         this.connection = connection;
+         this.statements = new StatementCache(connection, StatementCache.DEFAULT_CAPACITY);
+         this.lastUsed = System.currentTimeMillis();
+      }//end PooledConnection
+
+      /**
+       * @return the physical connection, for work that needs more than one statement
+       */
+      public Connection connection(){
+         return this.connection;
+      }//end connection
+
+      /**
+       * @see StatementCache#prepare
+       */
+      public PreparedStatement prepare (String sql, Object... params) throws SQLException {
+         return this.statements.prepare(sql, params);
+      }//end prepare
+
+      void close(){
+         this.statements.close();
+         try{
+            this.connection.close();
+         }catch (SQLException e){
+            // ignored.
+         }//end try
+      }//end close
+   }//end PooledConnection
+
+   /**
+    * Creates a pool; no connection is opened until the first borrow.
+    *
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @param maxSize the most connections open at once
+    * @param idleTimeoutMillis idle connections are closed after this long, 0 keeps them
+    */
+   public ConnectionPool (String url, String user, String passwd, int maxSize, long idleTimeoutMillis) {
+      this.url = url;
+      this.user = user;
+      this.passwd = passwd;
+      this.idleTimeoutMillis = idleTimeoutMillis;
+      this.permits = new Semaphore(maxSize, true);
+      if (idleTimeoutMillis > 0){
+         this.evictor = new Timer("pool-evictor", true);
+         long period = Math.max(1000, idleTimeoutMillis / 2);
+         this.evictor.schedule(new TimerTask() {
+            public void run(){
+               evictIdle();
+            }
+         }, period, period);
+      }else{
+         this.evictor = null;
+      }//end if
+   }//end ConnectionPool
+
+   /**
+    * Borrows a connection, opening one if none is idle. Waits for a release
+    * when maxSize connections are already out.
+    *
+    * @return a validated connection, to be given back with release
+    * @throws java.sql.SQLException when no connection could be obtained
+    */
+   public PooledConnection borrow() throws SQLException {
+      try{
+         if (!this.permits.tryAcquire(BORROW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+            throw new SQLException("Timed out waiting for a database connection");
+      }catch (InterruptedException e){
+         Thread.currentThread().interrupt();
+         throw new SQLException("Interrupted waiting for a database connection");
+      }//end try
+      try{
+         while (true){
+            PooledConnection conn;
+            synchronized (this){
+               if (this.closed)
+                  throw new SQLException("Connection pool is closed");
+               conn = this.idle.pollFirst();
+            }//end synchronized
+            if (conn == null)
+               return new PooledConnection(DriverManager.getConnection(this.url, this.user, this.passwd));
+            if (isValid(conn))
+               return conn;
+            conn.close();
+         }//end while
+      }catch (SQLException e){
+         this.permits.release();
+         throw e;
+      }catch (RuntimeException e){
+         this.permits.release();
+         throw e;
+      }//end try
+   }//end borrow
+
+   /**
+    * Gives a borrowed connection back to the pool.
+    *
+    * @param conn the connection returned by borrow
+    */
+   public void release(PooledConnection conn){
+      conn.lastUsed = System.currentTimeMillis();
+      boolean keep;
+      synchronized (this){
+         keep = !this.closed;
+         if (keep)
+            this.idle.addFirst(conn);
+      }//end synchronized
+      if (!keep)
+         conn.close();
+      this.permits.release();
+   }//end release
+
+   /**
+    * Closes the connections that have been idle longer than the idle timeout.
+    */
+   public void evictIdle(){
+      long cutoff = System.currentTimeMillis() - this.idleTimeoutMillis;
+      Deque<PooledConnection> expired = new ArrayDeque<PooledConnection>();
+      synchronized (this){
+         // least recently used connections sit at the tail
+         Iterator<PooledConnection> it = this.idle.descendingIterator();
+         while (it.hasNext()){
+            PooledConnection conn = it.next();
+            if (conn.lastUsed > cutoff)
+               break;
+            it.remove();
+            expired.add(conn);
+         }//end while
+      }//end synchronized
+      for (PooledConnection conn : expired)
+         conn.close();
+   }//end evictIdle
+
+   /**
+    * Closes every idle connection; connections still out are closed when released.
+    */
+   public void close(){
+      if (this.evictor != null)
+         this.evictor.cancel();
+      Deque<PooledConnection> toClose;
+      synchronized (this){
+         this.closed = true;
+         toClose = new ArrayDeque<PooledConnection>(this.idle);
+         this.idle.clear();
+      }//end synchronized
+      for (PooledConnection conn : toClose)
+         conn.close();
+   }//end close
+
+   private static boolean isValid(PooledConnection conn){
+      if (System.currentTimeMillis() - conn.lastUsed < VALIDATE_AFTER_MILLIS)
+         return true;
+      try{
+         ResultSet rs = conn.prepare("SELECT 1").executeQuery();
+         rs.close();
+         return true;
+      }catch (SQLException e){
+         return false;
+      }//end try
+   }//end isValid
+
+}//end ConnectionPool
@@ -0,0 +1,158 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class moves connection requests through their states:
+ *
+ *   (none) --request--> Request --accept--> Accept
+ *                          |
+ *                          +----reject--> Reject --request--> Request
+ *
+ * Two users share one CONNECTION_USR row whichever of them sent the
+ * request. The connection_usr_pair index enforces this: it is unique on the
+ * (least, greatest) ordering of the two ids. Because of it, every transition
+ * is one conditional statement and needs no SELECT first:
+ *   - request is an INSERT ... ON CONFLICT on the pair. It creates the row,
+ *     reopens a rejected pair, or accepts when the other user had already
+ *     asked. Two users asking each other at the same moment meet on the same
+ *     row, so they become friends instead of both holding a request.
+ *   - accept and reject are UPDATEs that only match a row still in the
+ *     expected state. The row count tells whether the transition happened,
+ *     so a concurrent answer cannot be overwritten. Repeating a transition
+ *     that already happened succeeds without changing anything.
+ *   - acceptAll and rejectAll answer every pending request of a user in one
+ *     UPDATE ... RETURNING.
+ * Each method also records the change in SocialGraph.
+ */
+public class ConnectionRequests {
+
+   /**
+    * The result of request.
+    */
+   public enum Outcome {
+      /** the request was sent, or was already pending from the sender */
+      SENT,
+      /** the other user had asked first, so the two are now friends */
+      ACCEPTED,
+      /** the other user has a request pending to the sender */
+      PENDING,
+      /** the two are already friends */
+      FRIENDS,
+      /** the recipient does not exist */
+      NO_USER
+   }
+
+   // the arbiter of every insert: the pair index, whichever way the request went
+   static final String PAIR =
+      "(least(userId, rtrim(connectionId)), greatest(userId, rtrim(connectionId)))";
+
+   // the row of the pair (?, ?) in CONNECTION_USR C, found through the pair index
+   static final String IS_PAIR =
+      "least(C.userId, rtrim(C.connectionId)) = least(?, ?) AND greatest(C.userId, rtrim(C.connectionId)) = greatest(?, ?)";
+
+   // for INSERT INTO CONNECTION_USR AS C: a rejected pair takes the new request, any other row stays
+   static final String REOPEN_REJECTED =
+      " ON CONFLICT " + PAIR + " DO UPDATE SET userId = EXCLUDED.userId, connectionId = EXCLUDED.connectionId, " +
+      "status = 'Request' WHERE C.status = 'Reject'";
+
+   private static final String REQUEST =
+      "WITH target AS (SELECT userId FROM USR WHERE userId = ?), " +
+      "prior AS (SELECT rtrim(C.status) AS status, C.userId AS sender FROM CONNECTION_USR C WHERE " + IS_PAIR + "), " +
+      "sent AS (INSERT INTO CONNECTION_USR AS C (userId, connectionId, status) " +
+      "SELECT ?, userId, 'Request' FROM target ON CONFLICT " + PAIR + " DO UPDATE SET " +
+      "userId = CASE WHEN C.status = 'Reject' THEN EXCLUDED.userId ELSE C.userId END, " +
+      "connectionId = CASE WHEN C.status = 'Reject' THEN EXCLUDED.connectionId ELSE C.connectionId END, " +
+      "status = CASE WHEN C.status = 'Reject' THEN 'Request' ELSE 'Accept' END " +
+      "WHERE C.status = 'Reject' OR (C.status = 'Request' AND C.userId = rtrim(EXCLUDED.connectionId)) " +
+      "RETURNING rtrim(C.status) AS status) " +
+      "SELECT (SELECT count(*) FROM target), (SELECT status FROM sent), (SELECT status FROM prior), (SELECT sender FROM prior)";
+
+   /**
+    * Sends a request from from to to in one statement. If to had already
+    * asked from, this accepts that request instead.
+    */
+   public static Outcome request(ProfNetwork esql, String from, String to) throws SQLException {
+      List<String> r = esql.executeQueryAndReturnResult(REQUEST, to, from, to, from, to, from).get(0);
+      String sent = r.get(1), prior = r.get(2);
+      if (Integer.parseInt(r.get(0).trim()) == 0)
+         return Outcome.NO_USER;
+      if ("Request".equals(sent)){
+         SocialGraph.get(esql).addRequest(from, to);
+         return Outcome.SENT;
+      }//end if
+      if ("Accept".equals(sent)){
+         SocialGraph.get(esql).accept(to, from);
+         return Outcome.ACCEPTED;
+      }//end if
+      if ("Accept".equals(prior))
+         return Outcome.FRIENDS;
+      // nothing changed: a repeat of from's pending request is already sent
+      return "Request".equals(prior) && from.equals(r.get(3)) ? Outcome.SENT : Outcome.PENDING;
+   }//end request
+
+   /**
+    * Accepts the request from sent to to.
+    *
+    * @return false when there is no such request, or it was rejected meanwhile
+    */
+   public static boolean accept(ProfNetwork esql, String from, String to) throws SQLException {
+      if (esql.executeUpdate(
+            "UPDATE CONNECTION_USR SET status = 'Accept' WHERE userId = ? AND connectionId = ? AND status IN ('Request', 'Accept')",
+            from, to) == 0)
+         return false;
+      SocialGraph.get(esql).accept(from, to);
+      return true;
+   }//end accept
+
+   /**
+    * Rejects the request from sent to to.
+    *
+    * @return false when there is no such request, or it was accepted meanwhile
+    */
+   public static boolean reject(ProfNetwork esql, String from, String to) throws SQLException {
+      if (esql.executeUpdate(
+            "UPDATE CONNECTION_USR SET status = 'Reject' WHERE userId = ? AND connectionId = ? AND status IN ('Request', 'Reject')",
+            from, to) == 0)
+         return false;
+      SocialGraph.get(esql).reject(from, to);
+      return true;
+   }//end reject
+
+   /**
+    * Accepts every request pending to user.
+    *
+    * @return the users whose requests were accepted
+    */
+   public static List<String> acceptAll(ProfNetwork esql, String user) throws SQLException {
+      List<String> senders = answerAll(esql, user, "Accept");
+      SocialGraph graph = SocialGraph.get(esql);
+      for (String from : senders)
+         graph.accept(from, user);
+      return senders;
+   }//end acceptAll
+
+   /**
+    * Rejects every request pending to user.
+    *
+    * @return the users whose requests were rejected
+    */
+   public static List<String> rejectAll(ProfNetwork esql, String user) throws SQLException {
+      List<String> senders = answerAll(esql, user, "Reject");
+      SocialGraph graph = SocialGraph.get(esql);
+      for (String from : senders)
+         graph.reject(from, user);
+      return senders;
+   }//end rejectAll
+
+   private static List<String> answerAll(ProfNetwork esql, String user, String status) throws SQLException {
+      List<String> senders = new ArrayList<String>();
+      for (List<String> r : esql.executeQueryAndReturnResult(
+            "UPDATE CONNECTION_USR SET status = ? WHERE connectionId = ? AND status = 'Request' RETURNING userId", status, user))
+         senders.add(r.get(0));
+      return senders;
+   }//end answerAll
+
+}//end ConnectionRequests
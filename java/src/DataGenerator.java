@@ -0,0 +1,403 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class writes a synthetic data set in the same CSV layout as data/, so
+ * the schema can be loaded (with BulkLoader) at sizes well past the bundled
+ * files.
+ *
+ * The friend graph follows the Chung-Lu model: the user of rank r gets weight
+ * r^-1/(exponent-1), and a pair of users is connected with probability
+ * proportional to the product of their weights, which gives a power-law
+ * degree distribution with the requested exponent and mean degree. Each pair
+ * is drawn only from its higher ranked end, so no pair appears twice or in
+ * both directions. Ranks are scattered over user ids so the hubs are not all
+ * named alike.
+ *
+ * Users are generated in chunks of CHUNK_USERS on a pool of threads; the
+ * chunks are written in order as they complete, holding only a few in memory,
+ * so the output is the same for a given seed whatever the thread count.
+ *
+ * Usage: java DataGenerator [name=value ...], names as in usage()
+ */
+public class DataGenerator {
+
+   // users generated per task
+   private static final int CHUNK_USERS = 10000;
+
+   private static final String[] FIRST = {
+      "Aida", "Arjun", "Ayden", "Bella", "Carlos", "Dana", "Elena", "Forrest", "Giovani", "Hana",
+      "Ivan", "Jazmyn", "Kallie", "Krystina", "Lorine", "Luis", "Magnus", "Makenna", "Nadia", "Omar",
+      "Priya", "Quinn", "Rosa", "Samir", "Tess", "Uma", "Victor", "Wendy", "Xavier", "Yara", "Zane"
+   };
+   private static final String[] LAST = {
+      "Abbott", "Bauch", "Cole", "Dicki", "Feil", "Gutmann", "Heathcote", "Hickle", "Johns", "Klein",
+      "Lind", "Mertz", "Nolan", "Ortiz", "Price", "Quigley", "Runte", "Schumm", "Toy", "Upton",
+      "Veum", "Weimann", "Yost", "Zboncak"
+   };
+   private static final String[] DOMAINS = { "alden.org", "verner.com", "mail.com", "example.net" };
+   private static final String[] COMPANIES = {
+      "Babbleopia", "Kwinu", "Twitterbridge", "Oba", "Zoomzone", "Skyble", "Realcube", "Jabberstorm",
+      "Photobug", "Wikizz", "Quatz", "Eamia", "Yodel", "Trilith", "Centimia", "Voonix"
+   };
+   private static final String[] ROLES = {
+      "Senior Developer", "Financial Advisor", "Software Engineer", "Data Analyst", "Accountant",
+      "Product Manager", "Designer", "Sales Associate", "Nurse", "Teacher"
+   };
+   private static final String[] LOCATIONS = {
+      "Xishaqiao", "Tyoply Stan", "Riverside", "Lisbon", "Osaka", "Nairobi", "Toronto", "Lima"
+   };
+   private static final String[] MAJORS = {
+      "history", "mbbs", "computer science", "economics", "biology", "physics", "literature", "law"
+   };
+   private static final String[] DEGREES = { "bachelor", "master", "phd" };
+   private static final String[] WORDS = {
+      "hello", "are", "you", "free", "next", "week", "for", "a", "quick", "call", "about", "the",
+      "project", "thanks", "again", "great", "to", "meet", "we", "should", "catch", "up", "soon"
+   };
+
+   private final File outDir;
+   private final int users;
+   private final double degree;
+   private final double messages;
+   private final double accept;
+   private final double request;
+   private final int threads;
+   private final long seed;
+
+   // Chung-Lu constants: weight(r) = r^-beta, a = 1 - beta
+   private final double beta;
+   private final double a;
+   private final long stride;
+
+   // output files and running totals, touched only by the thread in generate()
+   private Writer usr, connection, work, edu, message;
+   private long connections, works, edus, msgId;
+   private int written;
+
+   public DataGenerator (File outDir, int users, double degree, double exponent, double messages,
+                         double accept, double request, int threads, long seed) {
+      if (exponent <= 2)
+         throw new IllegalArgumentException("exponent must be greater than 2");
+      if (accept + request > 1)
+         throw new IllegalArgumentException("accept + request must be at most 1");
+      this.outDir = outDir;
+      this.users = users;
+      this.degree = degree;
+      this.messages = messages;
+      this.accept = accept;
+      this.request = request;
+      this.threads = threads;
+      this.seed = seed;
+      this.beta = 1.0 / (exponent - 1);
+      this.a = 1 - this.beta;
+      this.stride = coprimeStride(users);
+   }//end DataGenerator
+
+   private static void usage(){
+      System.err.println ("Usage: java [-classpath <classpath>] " + DataGenerator.class.getName () + " [name=value ...]");
+      System.err.println ("\tout=<dir>         where the CSVs are written (default generated)");
+      System.err.println ("\tusers=<n>         number of users (default 100000)");
+      System.err.println ("\tdegree=<d>        mean connections per user (default 10)");
+      System.err.println ("\texponent=<x>      power-law exponent of the degree distribution, > 2 (default 2.5)");
+      System.err.println ("\tmessages=<m>      mean messages sent per user (default 5)");
+      System.err.println ("\taccept=<f>        fraction of connections accepted (default 0.7)");
+      System.err.println ("\trequest=<f>       fraction still requested, the rest rejected (default 0.2)");
+      System.err.println ("\tthreads=<t>       generator threads (default all processors)");
+      System.err.println ("\tseed=<s>          random seed (default 1)");
+   }//end usage
+
+   public static void main (String[] args) {
+      String out = "generated";
+      int users = 100000, threads = Runtime.getRuntime().availableProcessors();
+      double degree = 10, exponent = 2.5, messages = 5, accept = 0.7, request = 0.2;
+      long seed = 1;
+      try{
+         for (String arg : args){
+            int eq = arg.indexOf('=');
+            if (eq < 0){
+               usage();
+               return;
+            }//end if
+            String name = arg.substring(0, eq), value = arg.substring(eq + 1);
+            if (name.equals("out")) out = value;
+            else if (name.equals("users")) users = Integer.parseInt(value);
+            else if (name.equals("degree")) degree = Double.parseDouble(value);
+            else if (name.equals("exponent")) exponent = Double.parseDouble(value);
+            else if (name.equals("messages")) messages = Double.parseDouble(value);
+            else if (name.equals("accept")) accept = Double.parseDouble(value);
+            else if (name.equals("request")) request = Double.parseDouble(value);
+            else if (name.equals("threads")) threads = Integer.parseInt(value);
+            else if (name.equals("seed")) seed = Long.parseLong(value);
+            else{
+               usage();
+               return;
+            }//end if
+         }//end for
+         new DataGenerator(new File(out), users, degree, exponent, messages, accept, request, threads, seed).generate();
+      }catch (Exception e){
+         System.err.println (e.getMessage ());
+      }//end try
+   }//end main
+
+   /*
+    * The rows generated for one chunk of users, one buffer per file. Messages
+    * are kept without their msgId, which is handed out when the chunk is written.
+    */
+   private static class Chunk {
+      final StringBuilder usr = new StringBuilder();
+      final StringBuilder connection = new StringBuilder();
+      final StringBuilder work = new StringBuilder();
+      final StringBuilder edu = new StringBuilder();
+      final List<String> messages = new ArrayList<String>();
+      long connections, works, edus;
+   }//end Chunk
+
+   /**
+    * Writes USR.csv, Connection.csv, Work_Ex.csv, Edu_Det.csv and Message.csv
+    * into the output directory.
+    */
+   public void generate() throws Exception {
+      if (!this.outDir.isDirectory() && !this.outDir.mkdirs())
+         throw new IOException("cannot create " + this.outDir);
+      long start = System.nanoTime();
+      this.usr = open("USR.csv", "User Id,Password,email,Full Name,dateofbirth");
+      this.connection = open("Connection.csv", "userid,connectionid,status");
+      this.work = open("Work_Ex.csv", "userId,company,role,location,startDate,endDate");
+      this.edu = open("Edu_Det.csv", "userid,instituitionName,major,degree,startdate,enddate");
+      this.message = open("Message.csv", "msgId,senderId,receiverId,contents,sendTime,deleteStatus,status");
+
+      ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+      ArrayDeque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+      int chunks = (this.users + CHUNK_USERS - 1) / CHUNK_USERS;
+      try{
+         for (int c = 0; c < chunks; ++c){
+            // keep a couple of chunks per thread in flight, write the oldest
+            if (pending.size() == 2 * this.threads)
+               write(pending.poll().get(), chunks);
+            final int first = c * CHUNK_USERS + 1;
+            final int last = Math.min(this.users, first + CHUNK_USERS - 1);
+            final long chunkSeed = this.seed * 1000003L + c;
+            pending.add(pool.submit(new Callable<Chunk>() {
+               public Chunk call(){
+                  return chunk(first, last, new Random(chunkSeed));
+               }
+            }));
+         }//end for
+         while (!pending.isEmpty())
+            write(pending.poll().get(), chunks);
+      }finally{
+         pool.shutdownNow();
+         this.usr.close();
+         this.connection.close();
+         this.work.close();
+         this.edu.close();
+         this.message.close();
+      }//end try
+
+      double secs = (System.nanoTime() - start) / 1e9;
+      long rows = this.users + this.connections + this.works + this.edus + this.msgId;
+      System.out.println(String.format("USR %d, CONNECTION_USR %d, WORK_EXPR %d, EDUCATIONAL_DETAILS %d, MESSAGE %d",
+                                       this.users, this.connections, this.works, this.edus, this.msgId));
+      System.out.println(String.format("%d rows in %.2fs (%.0f rows/sec) to %s", rows, secs, rows / Math.max(secs, 1e-9), this.outDir));
+   }//end generate
+
+   /*
+    * Appends a finished chunk to the files, numbering its messages.
+    */
+   private void write(Chunk done, int chunks) throws IOException {
+      this.usr.write(done.usr.toString());
+      this.connection.write(done.connection.toString());
+      this.work.write(done.work.toString());
+      this.edu.write(done.edu.toString());
+      for (String m : done.messages)
+         this.message.write(++this.msgId + "," + m + "\n");
+      this.connections += done.connections;
+      this.works += done.works;
+      this.edus += done.edus;
+      if (++this.written % Math.max(1, chunks / 10) == 0)
+         System.out.println(String.format("%d/%d users written", Math.min((long) this.written * CHUNK_USERS, this.users), this.users));
+   }//end write
+
+   private Writer open(String file, String header) throws IOException {
+      Writer w = new BufferedWriter(new FileWriter(new File(this.outDir, file)), 1 << 16);
+      w.write(header + "\n");
+      return w;
+   }//end open
+
+   /*
+    * Generates every row owned by the users ranked first..last (1 based).
+    */
+   Chunk chunk(int first, int last, Random rnd){
+      Chunk out = new Chunk();
+      double na = Math.pow(this.users, this.a);
+      // expected edges = 2m * a * r^-beta * (n^a - r^a) / n^2a sums to m over all ranks
+      double m = this.users * this.degree / 2;
+      Set<Integer> targets = new HashSet<Integer>();
+      for (int r = first; r <= last; ++r){
+         String id = userId(r);
+         user(out, id, rnd);
+
+         double expected = 2 * m * this.a * Math.pow(r, -this.beta) * (na - Math.pow(r, this.a)) / (na * na);
+         int k = Math.min(this.users - r, poisson(expected, rnd));
+         targets.clear();
+         double lo = Math.pow((double) r / this.users, this.a);
+         for (int tries = 0; targets.size() < k && tries < 2 * k + 10; ++tries){
+            // a rank above r, drawn in proportion to its weight
+            double u = lo + (1 - lo) * rnd.nextDouble();
+            int t = (int) Math.ceil(this.users * Math.pow(u, 1 / this.a));
+            if (t > r && t <= this.users)
+               targets.add(t);
+         }//end for
+         for (int t : targets){
+            double s = rnd.nextDouble();
+            String status = s < this.accept ? "Accept" : s < this.accept + this.request ? "Request" : "Reject";
+            // either end may have sent the request
+            if (rnd.nextBoolean())
+               out.connection.append(id).append(',').append(userId(t));
+            else
+               out.connection.append(userId(t)).append(',').append(id);
+            out.connection.append(',').append(status).append('\n');
+         }//end for
+         out.connections += targets.size();
+
+         int sent = poisson(this.messages, rnd);
+         for (int i = 0; i < sent; ++i){
+            // busy users get more mail too
+            int to = (int) Math.ceil(this.users * Math.pow(rnd.nextDouble(), 1 / this.a));
+            if (to < 1 || to > this.users || to == r)
+               continue;
+            out.messages.add(message(id, userId(to), rnd));
+         }//end for
+
+         out.works += work(out.work, id, rnd);
+         out.edus += education(out.edu, id, rnd);
+      }//end for
+      return out;
+   }//end chunk
+
+   /*
+    * Maps a rank to a user id through a fixed permutation of 0..users-1, so
+    * the id says nothing about the user's degree. Ids stay under 30 chars.
+    */
+   String userId(int rank){
+      long p = (rank - 1) * this.stride % this.users;
+      int f = (int) (p % FIRST.length);
+      int l = (int) (p / FIRST.length % LAST.length);
+      return FIRST[f] + "_" + LAST[l] + p;
+   }//end userId
+
+   private static long coprimeStride(int n){
+      long s = 1000003L % Math.max(n, 1);
+      while (n > 1 && gcd(s, n) != 1)
+         ++s;
+      return Math.max(s, 1);
+   }//end coprimeStride
+
+   private static long gcd(long x, long y){
+      return y == 0 ? x : gcd(y, x % y);
+   }//end gcd
+
+   private static void user(Chunk out, String id, Random rnd){
+      String first = FIRST[rnd.nextInt(FIRST.length)];
+      String last = LAST[rnd.nextInt(LAST.length)];
+      out.usr.append(id).append(',')
+             .append(LAST[rnd.nextInt(LAST.length)]).append(rnd.nextInt(1000)).append(',')
+             .append(first).append('.').append(last).append(rnd.nextInt(10000)).append('@').append(DOMAINS[rnd.nextInt(DOMAINS.length)]).append(',')
+             .append(first).append(' ').append(last).append(',')
+             .append(date(1940 + rnd.nextInt(65), rnd, '/')).append('\n');
+   }//end user
+
+   /*
+    * 0 to 3 jobs with distinct, increasing start dates, so the primary key holds.
+    */
+   private static int work(StringBuilder out, String id, Random rnd){
+      int jobs = rnd.nextInt(4);
+      int year = 1975 + rnd.nextInt(30);
+      for (int i = 0; i < jobs; ++i){
+         int length = 1 + rnd.nextInt(6);
+         out.append(id).append(',')
+            .append(COMPANIES[rnd.nextInt(COMPANIES.length)]).append(',')
+            .append(ROLES[rnd.nextInt(ROLES.length)]).append(',')
+            .append(LOCATIONS[rnd.nextInt(LOCATIONS.length)]).append(',')
+            .append(date(year, rnd, '/')).append(',')
+            .append(date(year + length, rnd, '/')).append('\n');
+         year += length + 1;
+      }//end for
+      return jobs;
+   }//end work
+
+   /*
+    * 0 to 2 degrees, each of a different level, so the primary key holds.
+    */
+   private static int education(StringBuilder out, String id, Random rnd){
+      int degrees = rnd.nextInt(3);
+      int year = 1960 + rnd.nextInt(40);
+      for (int i = 0; i < degrees; ++i){
+         out.append(id).append(',')
+            .append(COMPANIES[rnd.nextInt(COMPANIES.length)]).append(" University,")
+            .append(MAJORS[rnd.nextInt(MAJORS.length)]).append(',')
+            .append(DEGREES[i]).append(',')
+            .append(date(year, rnd, '-')).append(',')
+            .append(date(year + 2 + i, rnd, '-')).append('\n');
+         year += 3 + i;
+      }//end for
+      return degrees;
+   }//end education
+
+   /*
+    * senderId,receiverId,contents,sendTime,deleteStatus,status of one message.
+    */
+   private static String message(String from, String to, Random rnd){
+      StringBuilder sb = new StringBuilder(96);
+      sb.append(from).append(',').append(to).append(",\"");
+      int words = 3 + rnd.nextInt(15);
+      for (int i = 0; i < words; ++i)
+         sb.append(i > 0 ? " " : "").append(WORDS[rnd.nextInt(WORDS.length)]);
+      sb.append("\",").append(date(2015 + rnd.nextInt(5), rnd, '-'))
+        .append(String.format(" %02d:%02d:%02d", rnd.nextInt(24), rnd.nextInt(60), rnd.nextInt(60)));
+      // deleteStatus 0 = neither deleted, 1 = sender, 2 = receiver, 3 = both
+      int d = rnd.nextInt(20);
+      sb.append(',').append(d < 16 ? 0 : d < 18 ? 1 : d < 19 ? 2 : 3);
+      int s = rnd.nextInt(10);
+      sb.append(',').append(s < 2 ? "Sent" : s < 5 ? "Delivered" : "Read");
+      return sb.toString();
+   }//end message
+
+   private static String date(int year, Random rnd, char sep){
+      return String.format("%d%c%02d%c%02d", year, sep, 1 + rnd.nextInt(12), sep, 1 + rnd.nextInt(28));
+   }//end date
+
+   /*
+    * Poisson(mean) sample: Knuth's method for small means, normal approximation above.
+    */
+   private static int poisson(double mean, Random rnd){
+      if (mean <= 0)
+         return 0;
+      if (mean > 30)
+         return (int) Math.max(0, Math.round(mean + Math.sqrt(mean) * rnd.nextGaussian()));
+      double limit = Math.exp(-mean), p = 1;
+      int k = 0;
+      do{
+         ++k;
+         p *= rnd.nextDouble();
+      }while (p > limit);
+      return k - 1;
+   }//end poisson
+
+}//end DataGenerator
@@ -0,0 +1,126 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts latencies into log-linear buckets: every power of two
+ * of microseconds is split into SUB_BUCKETS equal buckets, so a percentile
+ * read back is within about 6% of the true value however wide the range.
+ * Recording is a few atomic adds, safe from any number of threads, and the
+ * memory used is fixed.
+ */
+public class LatencyHistogram {
+
+   // buckets per power of two; values below this many microseconds are exact
+   private static final int SUB_BUCKETS = 16;
+   private static final int SUB_BITS = 4;
+
+   // enough powers of two for anything up to days
+   private static final int BUCKETS = SUB_BUCKETS * 40;
+
+   private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+   private final AtomicLong count = new AtomicLong();
+   private final AtomicLong sumMicros = new AtomicLong();
+   private final AtomicLong maxMicros = new AtomicLong();
+
+   /**
+    * @param nanos one measured latency
+    */
+   public void record(long nanos){
+      long micros = Math.max(0, nanos / 1000);
+      this.counts.incrementAndGet(index(micros));
+      this.count.incrementAndGet();
+      this.sumMicros.addAndGet(micros);
+      for (long max = this.maxMicros.get(); micros > max; max = this.maxMicros.get())
+         if (this.maxMicros.compareAndSet(max, micros))
+            break;
+   }//end record
+
+   static int index(long micros){
+      if (micros < SUB_BUCKETS)
+         return (int) micros;
+      int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+      int sub = (int) (micros >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+      return Math.min(BUCKETS - 1, (magnitude - SUB_BITS + 1) * SUB_BUCKETS + sub);
+   }//end index
+
+   /* smallest value, in microseconds, counted in bucket i */
+   static long lowest(int i){
+      if (i < SUB_BUCKETS)
+         return i;
+      int magnitude = i / SUB_BUCKETS + SUB_BITS - 1;
+      return (long) (SUB_BUCKETS + i % SUB_BUCKETS) << (magnitude - SUB_BITS);
+   }//end lowest
+
+   public long count(){
+      return this.count.get();
+   }//end count
+
+   /**
+    * @return the mean latency in milliseconds
+    */
+   public double mean(){
+      long n = this.count.get();
+      return n == 0 ? 0 : this.sumMicros.get() / 1e3 / n;
+   }//end mean
+
+   /**
+    * @return the largest latency recorded, in milliseconds
+    */
+   public double max(){
+      return this.maxMicros.get() / 1e3;
+   }//end max
+
+   /**
+    * @param q the quantile wanted, 0 to 1
+    * @return the upper edge of the bucket holding that quantile, in milliseconds
+    */
+   public double percentile(double q){
+      long n = this.count.get();
+      if (n == 0)
+         return 0;
+      long rank = Math.max(1, (long) Math.ceil(q * n)), seen = 0;
+      for (int i = 0; i < BUCKETS; ++i){
+         seen += this.counts.get(i);
+         if (seen >= rank)
+            return Math.min(lowest(i + 1) - 1, this.maxMicros.get()) / 1e3;
+      }//end for
+      return max();
+   }//end percentile
+
+   /**
+    * Adds everything recorded in other to this histogram.
+    */
+   public void add(LatencyHistogram other){
+      for (int i = 0; i < BUCKETS; ++i)
+         this.counts.addAndGet(i, other.counts.get(i));
+      this.count.addAndGet(other.count.get());
+      this.sumMicros.addAndGet(other.sumMicros.get());
+      for (long max = this.maxMicros.get(), m = other.maxMicros.get(); m > max; max = this.maxMicros.get())
+         if (this.maxMicros.compareAndSet(max, m))
+            break;
+   }//end add
+
+   /**
+    * Prints one bar per power of two of microseconds that has any count.
+    */
+   public void print(PrintStream out){
+      long[] rows = new long[BUCKETS / SUB_BUCKETS];
+      long widest = 0;
+      for (int i = 0; i < BUCKETS; ++i){
+         rows[i / SUB_BUCKETS] += this.counts.get(i);
+         widest = Math.max(widest, rows[i / SUB_BUCKETS]);
+      }//end for
+      for (int r = 0; r < rows.length; ++r){
+         if (rows[r] == 0)
+            continue;
+         StringBuilder bar = new StringBuilder();
+         for (long b = rows[r] * 40 / widest; b > 0; --b)
+            bar.append('#');
+         out.println(String.format("   < %10.3f ms |%-40s %d", lowest((r + 1) * SUB_BUCKETS) / 1e3, bar, rows[r]));
+      }//end for
+   }//end print
+
+}//end LatencyHistogram
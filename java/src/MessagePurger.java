@@ -0,0 +1,66 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * This class physically removes messages both sides have deleted
+ * (deleteStatus 3) in the background. Deleting only flips bits in
+ * deleteStatus, so the rows would otherwise stay in MESSAGE, and its
+ * indexes, for good.
+ *
+ * Every PERIOD_SECS the purger deletes such rows PURGE_BATCH at a time, each
+ * batch its own short statement, so it never holds many row locks or a
+ * connection for long; the message_purge index finds them without a scan.
+ * The period comes from the profnetwork.purgeSecs system property
+ * (default 300, 0 turns the purger off).
+ */
+public class MessagePurger {
+
+   // rows removed per DELETE
+   private static final int PURGE_BATCH = 1000;
+
+   private static final long PERIOD_SECS = Long.getLong("profnetwork.purgeSecs", 300);
+
+   private static Timer timer = null;
+
+   /**
+    * Starts the purger on esql's connections, once per process.
+    */
+   public static synchronized void start(final ProfNetwork esql){
+      if (timer != null || PERIOD_SECS <= 0)
+         return;
+      timer = new Timer("message-purger", true);
+      timer.schedule(new TimerTask() {
+         public void run(){
+            try{
+               purge(esql);
+            }catch (Exception e){
+               // try again next period.
+            }//end try
+         }
+      }, PERIOD_SECS * 1000, PERIOD_SECS * 1000);
+   }//end start
+
+   public static synchronized void stop(){
+      if (timer != null){
+         timer.cancel();
+         timer = null;
+      }//end if
+   }//end stop
+
+   /**
+    * Deletes every message at deleteStatus 3, in batches.
+    *
+    * @return the number of messages removed
+    */
+   public static long purge(ProfNetwork esql) throws Exception {
+      String query = "DELETE FROM MESSAGE WHERE msgId IN " +
+                     "(SELECT msgId FROM MESSAGE WHERE deleteStatus = 3 LIMIT ?)";
+      long total = 0;
+      for (int n = PURGE_BATCH; n == PURGE_BATCH; total += n)
+         n = esql.executeUpdate(query, PURGE_BATCH);
+      return total;
+   }//end purge
+
+}//end MessagePurger
@@ -13,19 +13,24 @@
  */
 
 
-import java.sql.DriverManager;
 import java.sql.Connection;
-import java.sql.Statement;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.io.File;
 import java.io.FileReader;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.BufferedWriter;
+import java.io.PrintWriter;
 import java.util.List;
+import java.util.Map;
 import java.util.Iterator;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
 
 /**
  * This class defines a simple embedded SQL utility class that is designed to
@@ -34,8 +39,27 @@ import java.util.ArrayList;
  */
 public class ProfNetwork {
 
-   // reference to physical database connection.
-   private Connection _connection = null;
+   // pool of physical database connections; a console run owns a pool of one.
+   private ConnectionPool _pool = null;
+   private boolean _ownsPool = false;
+
+   // rows fetched per round trip by streamed queries
+   private static final int FETCH_SIZE = 500;
+
+   // cleared once the driver refuses setFetchSize, as the bundled pg73 one does
+   private static volatile boolean fetchSizeSupported = true;
+
+   // rows per FETCH when streaming through an explicit cursor instead
+   private static final int CURSOR_FETCH = 10000;
+
+   // people search results shown per page
+   private static final int SEARCH_PAGE_SIZE = 10;
+
+   // most recipients inserted by one statement when sending a message
+   private static final int MESSAGE_BATCH = 64;
+
+   // messages shown per page of the inbox and outbox
+   private static final int MESSAGE_PAGE_SIZE = 10;
 
    // handling the keyboard inputs through a BufferedReader
    // This variable can be global for convenience.
@@ -60,7 +84,9 @@ public class ProfNetwork {
          System.out.println ("Connection URL: " + url + "\n");
 
          // obtain a physical connection
-         this._connection = DriverManager.getConnection(url, user, passwd);
+         this._pool = new ConnectionPool(url, user, passwd, 1, 0);
+         this._ownsPool = true;
+         this._pool.release(this._pool.borrow());
          System.out.println("Done");
       }catch (Exception e){
          System.err.println("Error - Unable to Connect to Database: " + e.getMessage() );
@@ -69,126 +95,374 @@ public class ProfNetwork {
       }//end catch
    }//end ProfNetwork
 
+   /**
+    * Creates an instance for one server session on a shared connection pool.
+    *
+    * @param pool the pool every statement borrows its connection from
+    */
+   public ProfNetwork (ConnectionPool pool) {
+      this._pool = pool;
+   }//end ProfNetwork
+
    /**
     * Method to execute an update SQL statement.  Update SQL instructions
     * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
     *
-    * @param sql the input SQL string
+    * @param sql the input SQL string, with ? placeholders
+    * @param params the values bound to the placeholders
+    * @return the number of rows inserted, updated or deleted
     * @throws java.sql.SQLException when update failed
     */
-   public void executeUpdate (String sql) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
-
-      // issues the update instruction
-      stmt.executeUpdate (sql);
+   public int executeUpdate (String sql, Object... params) throws SQLException {
+      ConnectionPool.PooledConnection conn = this._pool.borrow ();
+      long start = System.nanoTime ();
+      int rowCount = 0;
+      boolean failed = true;
+      try{
+         // fetches the cached statement for this template and binds the values
+         PreparedStatement stmt = conn.prepare (sql, params);
 
-      // close the instruction
-      stmt.close ();
+         // issues the update instruction
+         rowCount = stmt.executeUpdate ();
+         failed = false;
+         return rowCount;
+      }finally{
+         QueryStats.record (sql, System.nanoTime () - start, rowCount, failed);
+         this._pool.release (conn);
+      }//end try
    }//end executeUpdate
 
+   /**
+    * Method to execute several update SQL statements as JDBC batches in one
+    * transaction. Each template's parameter lists become one batch, so a
+    * template costs a single round trip however many rows it touches, and
+    * either every statement is applied or none is.
+    *
+    * @param batches the parameter lists to bind, by SQL template, run in map order
+    * @return the number of rows inserted, updated or deleted in total
+    * @throws java.sql.SQLException when any statement failed, nothing is applied then
+    */
+   public int executeBatches (Map<String, List<Object[]>> batches) throws SQLException {
+      return executeBatches (batches, null);
+   }//end executeBatches
+
+   /**
+    * Method to execute update batches like executeBatches(Map), also
+    * reporting how many rows each statement touched.
+    *
+    * @param batches the parameter lists to bind, by SQL template, run in map order
+    * @param counts receives, per template in map order, the row count of each
+    *        of its parameter lists; may be null
+    * @return the number of rows inserted, updated or deleted in total
+    * @throws java.sql.SQLException when any statement failed, nothing is applied then
+    */
+   public int executeBatches (Map<String, List<Object[]>> batches, List<int[]> counts) throws SQLException {
+      ConnectionPool.PooledConnection conn = this._pool.borrow ();
+      Connection c = conn.connection ();
+      int total = 0;
+      try{
+         c.setAutoCommit (false);
+         try{
+            for (Map.Entry<String, List<Object[]>> batch : batches.entrySet ()){
+               long start = System.nanoTime ();
+               int rowCount = 0;
+               boolean failed = true;
+               try{
+                  PreparedStatement stmt = conn.prepare (batch.getKey ());
+                  stmt.clearBatch ();
+                  for (Object[] params : batch.getValue ()){
+                     conn.prepare (batch.getKey (), params);
+                     stmt.addBatch ();
+                  }//end for
+                  int[] done = stmt.executeBatch ();
+                  for (int n : done)
+                     rowCount += Math.max (n, 0);
+                  if (counts != null)
+                     counts.add (done);
+                  failed = false;
+               }finally{
+                  QueryStats.record (batch.getKey (), System.nanoTime () - start, rowCount, failed);
+               }//end try
+               total += rowCount;
+            }//end for
+            c.commit ();
+            return total;
+         }catch (SQLException e){
+            c.rollback ();
+            throw e;
+         }finally{
+            c.setAutoCommit (true);
+         }//end try
+      }finally{
+         this._pool.release (conn);
+      }//end try
+   }//end executeBatches
+
+   /**
+    * Callback handed each row of a streamed query, see executeQueryAndStream.
+    */
+   public interface RowHandler {
+      /**
+       * @param row the result set, positioned on the current row
+       * @throws java.sql.SQLException when a column could not be read
+       */
+      void handle (ResultSet row) throws SQLException;
+   }//end RowHandler
+
+   /**
+    * Method to execute an input query SQL instruction (i.e. SELECT) and hand
+    * every row to a callback as it arrives. The query runs in a transaction
+    * so the driver can read it through a server side cursor, FETCH_SIZE rows
+    * at a time, keeping memory flat however many rows match. With a driver
+    * that has no fetch size support (the bundled pg73 one) the query is
+    * DECLAREd as a cursor in the same transaction and read CURSOR_FETCH rows
+    * per FETCH instead.
+    *
+    * @param query the input query string, with ? placeholders
+    * @param handler called once per row
+    * @param params the values bound to the placeholders
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryAndStream (String query, RowHandler handler, Object... params) throws SQLException {
+      ConnectionPool.PooledConnection conn = this._pool.borrow ();
+      Connection c = conn.connection ();
+      long start = System.nanoTime ();
+      int rowCount = 0;
+      boolean failed = true;
+      try{
+         // cursors only stream outside autocommit
+         c.setAutoCommit (false);
+         try{
+            PreparedStatement stmt = null;
+            if (fetchSizeSupported){
+               stmt = conn.prepare (query, params);
+               try{
+                  stmt.setFetchSize (FETCH_SIZE);
+               }catch (SQLException e){
+                  // "not implemented": use an explicit cursor from now on
+                  fetchSizeSupported = false;
+                  stmt = null;
+               }//end try
+            }//end if
+            if (stmt == null){
+               conn.prepare ("DECLARE profnetwork_stream NO SCROLL CURSOR FOR " + query, params).execute ();
+               PreparedStatement fetch = conn.prepare ("FETCH " + CURSOR_FETCH + " FROM profnetwork_stream");
+               int fetched;
+               do{
+                  fetched = 0;
+                  ResultSet rs = fetch.executeQuery ();
+                  while (rs.next()){
+                     handler.handle (rs);
+                     ++fetched;
+                  }//end while
+                  rs.close ();
+                  rowCount += fetched;
+               }while (fetched == CURSOR_FETCH);
+               conn.prepare ("CLOSE profnetwork_stream").execute ();
+            }else{
+               ResultSet rs = stmt.executeQuery ();
+               while (rs.next()){
+                  handler.handle (rs);
+                  ++rowCount;
+               }//end while
+               rs.close ();
+            }//end if
+            c.commit ();
+            failed = false;
+            return rowCount;
+         }catch (SQLException e){
+            c.rollback ();
+            throw e;
+         }finally{
+            c.setAutoCommit (true);
+         }//end try
+      }finally{
+         QueryStats.record (query, System.nanoTime () - start, rowCount, failed);
+         this._pool.release (conn);
+      }//end try
+   }//end executeQueryAndStream
+
    /**
     * Method to execute an input query SQL instruction (i.e. SELECT).  This
     * method issues the query to the DBMS and outputs the results to
     * standard out.
     *
-    * @param query the input query string
+    * @param query the input query string, with ? placeholders
+    * @param params the values bound to the placeholders
     * @return the number of rows returned
     * @throws java.sql.SQLException when failed to execute the query
     */
-   public int executeQueryAndPrintResult (String query) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
+   public int executeQueryAndPrintResult (String query, Object... params) throws SQLException {
+      return executeQueryAndPrintAndStream (query, null, params);
+   }//end executeQueryAndPrintResult
 
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
-
-      /*
-       ** obtains the metadata object for the returned result set.  The metadata
-       ** contains row and column info.
-       */
-      ResultSetMetaData rsmd = rs.getMetaData ();
-      int numCol = rsmd.getColumnCount ();
-      int rowCount = 0;
-
-      // iterates through the result set and output them to standard out.
-      boolean outputHeader = true;
-      while (rs.next()){
-	 if(outputHeader){
-	    for(int i = 1; i <= numCol; i++){
-		System.out.print(rsmd.getColumnName(i) + "\t");
-	    }
-	    System.out.println();
-	    outputHeader = false;
-	 }
-         for (int i=1; i<=numCol; ++i)
-            System.out.print (rs.getString (i) + "\t");
-         System.out.println ();
-         ++rowCount;
-      }//end while
-      stmt.close ();
-      return rowCount;
-   }//end executeQuery
+   /**
+    * Method to print the result of an input query like
+    * executeQueryAndPrintResult, also handing every row to a callback after
+    * it is printed, e.g. to remember where a page of results ended.
+    *
+    * @param query the input query string, with ? placeholders
+    * @param seen called once per printed row, may be null
+    * @param params the values bound to the placeholders
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryAndPrintAndStream (String query, final RowHandler seen, Object... params) throws SQLException {
+      // rows are written through one buffer and flushed once at the end
+      final PrintWriter out = new PrintWriter (new BufferedWriter (new OutputStreamWriter (System.out), 8192));
+      try{
+         return executeQueryAndStream (query, new RowHandler() {
+            private int numCol = -1;
+
+            public void handle (ResultSet rs) throws SQLException {
+               if (numCol < 0){
+                  /*
+                   ** obtains the metadata object for the returned result set.  The metadata
+                   ** contains row and column info.
+                   */
+                  ResultSetMetaData rsmd = rs.getMetaData ();
+                  numCol = rsmd.getColumnCount ();
+                  for (int i = 1; i <= numCol; i++){
+                     out.print (rsmd.getColumnName(i));
+                     out.print ('\t');
+                  }
+                  out.println ();
+               }//end if
+               for (int i=1; i<=numCol; ++i){
+                  out.print (rs.getString (i));
+                  out.print ('\t');
+               }
+               out.println ();
+               if (seen != null)
+                  seen.handle (rs);
+            }
+         }, params);
+      }finally{
+         out.flush ();
+      }//end try
+   }//end executeQueryAndPrintAndStream
 
    /**
     * Method to execute an input query SQL instruction (i.e. SELECT).  This
     * method issues the query to the DBMS and returns the results as
     * a list of records. Each record in turn is a list of attribute values
     *
-    * @param query the input query string
+    * @param query the input query string, with ? placeholders
+    * @param params the values bound to the placeholders
     * @return the query result as a list of records
     * @throws java.sql.SQLException when failed to execute the query
     */
-   public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
-
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
-
-      /*
-       ** obtains the metadata object for the returned result set.  The metadata
-       ** contains row and column info.
-       */
-      ResultSetMetaData rsmd = rs.getMetaData ();
-      int numCol = rsmd.getColumnCount ();
-      int rowCount = 0;
-
-      // iterates through the result set and saves the data returned by the query.
-      boolean outputHeader = false;
+   public List<List<String>> executeQueryAndReturnResult (String query, Object... params) throws SQLException {
+      ConnectionPool.PooledConnection conn = this._pool.borrow ();
+      long start = System.nanoTime ();
       List<List<String>> result  = new ArrayList<List<String>>();
-      while (rs.next()){
-          List<String> record = new ArrayList<String>();
-         for (int i=1; i<=numCol; ++i)
-            record.add(rs.getString (i));
-         result.add(record);
-      }//end while
-      stmt.close ();
-      return result;
+      boolean failed = true;
+      try{
+         // fetches the cached statement for this template and binds the values
+         PreparedStatement stmt = conn.prepare (query, params);
+
+         // issues the query instruction
+         ResultSet rs = stmt.executeQuery ();
+
+         /*
+          ** obtains the metadata object for the returned result set.  The metadata
+          ** contains row and column info.
+          */
+         ResultSetMetaData rsmd = rs.getMetaData ();
+         int numCol = rsmd.getColumnCount ();
+
+         // iterates through the result set and saves the data returned by the query.
+         while (rs.next()){
+            List<String> record = new ArrayList<String>();
+            for (int i=1; i<=numCol; ++i)
+               record.add(rs.getString (i));
+            result.add(record);
+         }//end while
+         rs.close ();
+         failed = false;
+         return result;
+      }finally{
+         QueryStats.record (query, System.nanoTime () - start, result.size (), failed);
+         this._pool.release (conn);
+      }//end try
    }//end executeQueryAndReturnResult
 
    /**
     * Method to execute an input query SQL instruction (i.e. SELECT).  This
     * method issues the query to the DBMS and returns the number of results
     *
-    * @param query the input query string
+    * @param query the input query string, with ? placeholders
+    * @param params the values bound to the placeholders
     * @return the number of rows returned
     * @throws java.sql.SQLException when failed to execute the query
     */
-   public int executeQuery (String query) throws SQLException {
-       // creates a statement object
-       Statement stmt = this._connection.createStatement ();
-
-       // issues the query instruction
-       ResultSet rs = stmt.executeQuery (query);
-
+   public int executeQuery (String query, Object... params) throws SQLException {
+       ConnectionPool.PooledConnection conn = this._pool.borrow ();
+       long start = System.nanoTime ();
        int rowCount = 0;
+       boolean failed = true;
+       try{
+          // fetches the cached statement for this template and binds the values
+          PreparedStatement stmt = conn.prepare (query, params);
+
+          // issues the query instruction
+          ResultSet rs = stmt.executeQuery ();
+
+          // iterates through the result set and count nuber of results.
+          if(rs.next()){
+             rowCount++;
+          }//end while
+          rs.close ();
+          failed = false;
+          return rowCount;
+       }finally{
+          QueryStats.record (query, System.nanoTime () - start, rowCount, failed);
+          this._pool.release (conn);
+       }//end try
+   }
 
-       // iterates through the result set and count nuber of results.
-       if(rs.next()){
-          rowCount++;
-       }//end while
-       stmt.close ();
+   /**
+    * Method to check whether an input query returns any row. The query is
+    * wrapped in EXISTS, so the DBMS stops at the first match and no row is
+    * shipped back.
+    *
+    * @param query the input query string, with ? placeholders
+    * @param params the values bound to the placeholders
+    * @return true when the query has at least one row
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public boolean executeExists (String query, Object... params) throws SQLException {
+       ConnectionPool.PooledConnection conn = this._pool.borrow ();
+       long start = System.nanoTime ();
+       boolean found = false, failed = true;
+       try{
+          ResultSet rs = conn.prepare ("SELECT EXISTS (" + query + ")", params).executeQuery ();
+          found = rs.next() && rs.getBoolean (1);
+          rs.close ();
+          failed = false;
+          return found;
+       }finally{
+          QueryStats.record (query, System.nanoTime () - start, found ? 1 : 0, failed);
+          this._pool.release (conn);
+       }//end try
+   }
+
+   /**
+    * Method to print the result of an input query in one pass, or the given
+    * message when it has no rows. Use this rather than probing with
+    * executeQuery first, which runs the query twice.
+    *
+    * @param ifEmpty printed when the query returns no row
+    * @param query the input query string, with ? placeholders
+    * @param params the values bound to the placeholders
+    * @return the number of rows printed
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryAndPrintResultOr (String ifEmpty, String query, Object... params) throws SQLException {
+       int rowCount = executeQueryAndPrintResult (query, params);
+       if (rowCount == 0)
+          System.out.println (ifEmpty);
        return rowCount;
    }
 
@@ -197,46 +471,62 @@ public class ProfNetwork {
    /**
     * Method to fetch the last value from sequence. This
     * method issues the query to the DBMS and returns the current
-    * value of sequence used for autogenerated keys
+    * value of sequence used for autogenerated keys. currval is per
+    * connection, so this is only meaningful on a console run's pool of one.
     *
     * @param sequence name of the DB sequence
     * @return current value of a sequence
     * @throws java.sql.SQLException when failed to execute the query
     */
    public int getCurrSeqVal(String sequence) throws SQLException {
-	Statement stmt = this._connection.createStatement ();
-
-	ResultSet rs = stmt.executeQuery (String.format("Select currval('%s')", sequence));
-	if (rs.next())
-		return rs.getInt(1);
-	return -1;
+	ConnectionPool.PooledConnection conn = this._pool.borrow ();
+	try{
+		ResultSet rs = conn.prepare ("Select currval(?)", sequence).executeQuery ();
+		int value = -1;
+		if (rs.next())
+			value = rs.getInt(1);
+		rs.close ();
+		return value;
+	}finally{
+		this._pool.release (conn);
+	}
    }
 
    /**
-    * Method to close the physical connection if it is open.
+    * Method to close the physical connection if it is open. A shared
+    * server pool is left open for the other sessions.
     */
    public void cleanup(){
-      try{
-         if (this._connection != null){
-            this._connection.close ();
-         }//end if
-      }catch (SQLException e){
-         // ignored.
-      }//end try
+      if (this._pool != null && this._ownsPool){
+         this._pool.close ();
+      }//end if
    }//end cleanup
 
    /**
     * The main execution method
     *
-    * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
+    * @param args the command line arguments this inclues the <mysql|pgsql> <login file>,
+    *             optionally followed by a port to serve sessions on and a pool size
     */
    public static void main (String[] args) {
-      if (args.length != 3) {
+      if (args.length < 3 || args.length > 5) {
          System.err.println (
             "Usage: " +
             "java [-classpath <classpath>] " +
             ProfNetwork.class.getName () +
-            " <dbname> <port> <user>");
+            " <dbname> <port> <user> [<serverPort> [<poolSize>]]");
+         return;
+      }//end if
+
+      if (args.length >= 4) {
+         try{
+            Class.forName ("org.postgresql.Driver");
+            String url = "jdbc:postgresql://localhost:" + args[1] + "/" + args[0];
+            int poolSize = args.length == 5 ? Integer.parseInt(args[4]) : 10;
+            SessionServer.serve(url, args[2], "", Integer.parseInt(args[3]), poolSize);
+         }catch(Exception e) {
+            System.err.println (e.getMessage ());
+         }//end try
          return;
       }//end if
 
@@ -251,48 +541,9 @@ public class ProfNetwork {
          String dbport = args[1];
          String user = args[2];
          esql = new ProfNetwork (dbname, dbport, user, "");
-
-         boolean keepon = true;
-         while(keepon) {
-            // These are sample SQL statements
-            System.out.println("\nMAIN MENU");
-            System.out.println("---------");
-            System.out.println("1. Create User");
-            System.out.println("2. Log In");
-            System.out.println("9. < EXIT");
-            String authorisedUser = null;
-            switch (readChoice()){
-               case 1: CreateUser(esql); break;
-               case 2: authorisedUser = LogIn(esql); break;
-               case 9: keepon = false; break;
-               default : System.out.println("Unrecognized choice!"); break;
-            }//end switch
-            if (authorisedUser != null) {
-              boolean usermenu = true;
-              while(usermenu) {
-                System.out.println("\nMAIN MENU");
-                System.out.println("---------");
-		System.out.println("1. View Profile");
-                System.out.println("2. Go to Friend List");
-                System.out.println("3. Update Profile");
-                System.out.println("4. Request Dashboard");
-                System.out.println("5. Message Dashboard");
-		System.out.println("6. Search For People");
-                System.out.println(".........................");
-                System.out.println("9. Log out");
-                switch (readChoice()){
-                   case 1: displayProf	(esql, authorisedUser); break;
-		   case 2: FriendList	(esql, authorisedUser); break;
-                   case 3: UpdateProfile(esql, authorisedUser); break;
-                   case 4: ReqDash	(esql, authorisedUser); break;
-                   case 5: ViewMessage	(esql, authorisedUser); break;
-                   case 6: srcPpl	(esql, authorisedUser); break;
-		   case 9: usermenu = false; break;
-                   default : System.out.println("Unrecognized choice!"); break;
-                }
-              }
-            }
-         }//end while
+         MessagePurger.start(esql);
+         RequestQuota.start(esql);
+         runMenu(esql);
       }catch(Exception e) {
          System.err.println (e.getMessage ());
       }finally{
@@ -300,6 +551,8 @@ public class ProfNetwork {
          try{
             if(esql != null) {
                System.out.print("Disconnecting from database...");
+               MessagePurger.stop ();
+               RequestQuota.stop ();
                esql.cleanup ();
                System.out.println("Done\n\nBye !");
             }//end if
@@ -309,6 +562,53 @@ public class ProfNetwork {
       }//end try
    }//end main
 
+   /*
+    * Runs the login and user menus until the user exits
+    **/
+   public static void runMenu(ProfNetwork esql) {
+      boolean keepon = true;
+      while(keepon) {
+         // These are sample SQL statements
+         System.out.println("\nMAIN MENU");
+         System.out.println("---------");
+         System.out.println("1. Create User");
+         System.out.println("2. Log In");
+         System.out.println("9. < EXIT");
+         String authorisedUser = null;
+         switch (readChoice()){
+            case 1: CreateUser(esql); break;
+            case 2: authorisedUser = LogIn(esql); break;
+            case 9: keepon = false; break;
+            default : System.out.println("Unrecognized choice!"); break;
+         }//end switch
+         if (authorisedUser != null) {
+           boolean usermenu = true;
+           while(usermenu) {
+             System.out.println("\nMAIN MENU");
+             System.out.println("---------");
+             System.out.println("1. View Profile");
+             System.out.println("2. Go to Friend List");
+             System.out.println("3. Update Profile");
+             System.out.println("4. Request Dashboard");
+             System.out.println("5. Message Dashboard");
+             System.out.println("6. Search For People");
+             System.out.println(".........................");
+             System.out.println("9. Log out");
+             switch (readChoice()){
+                case 1: displayProf	(esql, authorisedUser); break;
+                case 2: FriendList	(esql, authorisedUser); break;
+                case 3: UpdateProfile(esql, authorisedUser); break;
+                case 4: ReqDash	(esql, authorisedUser); break;
+                case 5: ViewMessage	(esql, authorisedUser); break;
+                case 6: srcPpl	(esql, authorisedUser); break;
+                case 9: usermenu = false; break;
+                default : System.out.println("Unrecognized choice!"); break;
+             }
+           }
+         }
+      }//end while
+   }//end runMenu
+
    public static void Greeting(){
       System.out.println(
          "\n\n*******************************************************\n" +
@@ -348,15 +648,13 @@ public class ProfNetwork {
          String password = in.readLine();
          System.out.print("\tEnter user email: ");
          String email = in.readLine();
-	 //Creating empty contact\block lists for a user
-	 String query = String.format("SELECT * FROM USR WHERE userId = '%s'", login);
-         int validIn = esql.executeQuery(query);
-         if(validIn > 0){
+	 // the insert itself tells whether the username is taken
+	 String query = "INSERT INTO USR (userId, password, email) VALUES (?,?,?) ON CONFLICT (userId) DO NOTHING";
+	 if(esql.executeUpdate(query, login, Auth.hash(password), email) == 0){
             System.out.println("\nSomeone already has that username, please try again");
             return;
          }
-	 query = String.format("INSERT INTO USR (userId, password, email) VALUES ('%s','%s','%s')", login, password, email);
-	 esql.executeUpdate(query);
+	 ProfileCache.invalidate(login);
 	 System.out.println ("User successfully created!");
 	 }catch(Exception e){
 	 	System.err.println (e.getMessage ());
@@ -374,11 +672,13 @@ public class ProfNetwork {
          System.out.print("\tEnter user password: ");
          String password = in.readLine();
          
-         String query = String.format("SELECT * FROM USR WHERE userId = '%s' AND password = '%s'", login, password);
-         int userNum = esql.executeQuery(query);
-         if (userNum == 1) {
+         Auth.Result result = Auth.login(esql, login, password, SessionServer.source());
+         if (result == Auth.Result.OK) {
                 return login;
          }
+	 else if (result == Auth.Result.THROTTLED) {
+		System.out.println("\tToo many login attempts, please wait a minute and try again\n");
+	 }
 	 else {
 		System.out.println("\tIncorrect userid or password! Please try again!\n");
 	 }
@@ -391,71 +691,67 @@ public class ProfNetwork {
 
    public static boolean isFriend(ProfNetwork esql, String authU, String nCheck){ //checks if name is friend list
       try{
-         List<List<String>> friends  = new ArrayList<List<String>>();
-         String query= String.format("SELECT DISTINCT C.connectionId FROM connection_usr C WHERE C.userId = '%s' AND C.status = 'Accept' UNION SELECT DISTINCT C.userId FROM connection_usr C WHERE C.connectionId = '%s' AND C.status = 'Accept'", authU, authU);
-         friends = esql.executeQueryAndReturnResult(query);
-         String temp = "";
-         Iterator<List<String>> listIt = friends.iterator();
-         while(listIt.hasNext()){
-            if(listIt.next().get(0).equals(nCheck)){
-	       return true;
-	    }
-         }
-	 return false;  
+         return SocialGraph.get(esql).areFriends(authU, nCheck);
+      }catch(Exception e){
+         System.err.println (e.getMessage ());
+         return false;
+      }
+   }
+
+   /*
+    * Checks whether target is at most maxHops accepted connections away from
+    * source, by a bidirectional search of the in-memory friend graph.
+    */
+   public static boolean withinHops(ProfNetwork esql, String source, String target, int maxHops){
+      try{
+         return SocialGraph.get(esql).degreeOfSeparation(source, target, maxHops) > 0;
       }catch(Exception e){
          System.err.println (e.getMessage ());
          return false;
       }
    }
 
+   /*
+    * Browses profiles along a chain of friends starting at names (the caller
+    * passes the logged in user). Every profile opened pushes its chain on a
+    * navigation stack and "Go Back" pops it, so browsing deeper doesn't
+    * recurse. A chain is validated when it is pushed, by checking only its
+    * newest edge; the whole chain is rechecked in one query before a friend
+    * request is sent from it.
+    */
    public static void lookFriendMenu(ProfNetwork esql, String authUse, List<String> names){
       try{
-	System.out.print("\nType in the username of the person whose profile you want to see: ");
-        String toLook = in.readLine();
-	names.add(toLook);
-	int validFriend = 1;
-	// String outputTesting = "";
-	for(int i = names.size()-1; i >= 1; i--){
-		// outputTesting = "Trying " + names.get(i-1) + " and " + names.get(i) + "\n";
-		//System.out.print(outputTesting);
-		String query = String.format("SELECT * FROM CONNECTION_USR C WHERE ((C.userId = '%s' AND C.connectionid = '%s') OR (C.userId = '%s' AND C.connectionid = '%s')) AND C.status = 'Accept'", names.get(i-1), names.get(i), names.get(i), names.get(i-1));
-        	if(esql.executeQuery(query) != 1) 
-			validFriend = 0;
-	}
-        //System.out.print("done checking\n");
-        if (validFriend != 1){
-		System.out.print("Invalid input.\n");
-		names.remove(names.size() - 1);
-		return;
-	}
-	if(isFriend(esql, authUse, toLook) == true){ // if travel from non-friend to a friend, reset connection level
-	   names.clear();
-	   names.add(authUse);
-	   names.add(toLook);
-	}
-	//System.out.print("friend menu time\n");
-        boolean friendmenu = true;
-        while(friendmenu) {
-		String out = names.get(names.size()-1) + "'s Profile";
+        ArrayDeque<List<String>> stack = new ArrayDeque<List<String>>();
+        stack.push(names);
+        pushFriend(esql, authUse, stack);
+        while(stack.size() > 1) {
+                List<String> chain = stack.peek();
+                String current = chain.get(chain.size()-1);
+		String out = current + "'s Profile";
         	System.out.println(out);
-		displayProf(esql, names.get(names.size()-1));
-		// dispFList(esql, toLook);
+		displayProf(esql, current);
+		printConnection(esql, authUse, current);
                 System.out.println("\n---------");
-                out = "1. Write " + names.get(names.size()-1) + " a new message";
+                out = "1. Write " + current + " a new message";
 		System.out.println(out);
-		out = "2. View " + names.get(names.size()-1) + "'s friends list";
+		out = "2. View " + current + "'s friends list";
 		System.out.println(out);
-                if((names.size() < 4) && (names.size()> 1))
+                if((chain.size() < 4) && (chain.size()> 1))
 			System.out.println("3. Send Friend Request");
 		System.out.println("4. Look at one of their friends");
                 System.out.println(".........................");
                 System.out.println("9. Go Back");
                 switch (readChoice()){
-                   case 2: dispFList(esql, names.get(names.size()-1)); break;
+                   case 2: dispFList(esql, current); break;
                    case 1: NewMessage(esql, authUse); break;
-                   case 3: SendRequestTO(esql, authUse, names.get(names.size()-1)); break;
-		   case 4: lookFriendMenu(esql, authUse, names); break; 
-                   case 9: names.remove(names.size() - 1); friendmenu = false; break;
+                   case 3:
+                      if(isChainValid(esql, chain))
+                         SendRequestTO(esql, authUse, current);
+                      else
+                         System.out.println("You are no longer connected to " + current + " this way.");
+                      break;
+		   case 4: pushFriend(esql, authUse, stack); break;
+                   case 9: stack.pop(); break;
                    default : System.out.println("Unrecognized choice!"); break;
                 }
               }
@@ -467,6 +763,96 @@ public class ProfNetwork {
       }
    }//end
 
+   /*
+    * Prints how the user is connected to the profile being browsed: its
+    * connection count, the friends they share and how many hops apart they are.
+    */
+   private static void printConnection(ProfNetwork esql, String authUse, String other) throws SQLException {
+        SocialGraph graph = SocialGraph.get(esql);
+        List<String> mutual = graph.mutualFriends(authUse, other);
+        int hops = graph.degreeOfSeparation(authUse, other, 3);
+        StringBuilder line = new StringBuilder(graph.friendCount(other) + " connection(s), " + mutual.size() + " mutual");
+        for (int i = 0; i < mutual.size() && i < 5; ++i)
+            line.append(i == 0 ? ": " : ", ").append(mutual.get(i));
+        System.out.println(line + (mutual.size() > 5 ? ", ..." : ""));
+        if (hops > 0)
+            System.out.println(hops == 1 ? "1st degree connection" : hops == 2 ? "2nd degree connection" : "3rd degree connection");
+   }
+
+   /*
+    * Asks for a friend of the profile on top of the stack and pushes the
+    * chain that reaches them. Only the new edge is checked; reaching a
+    * direct friend of the user starts a fresh chain.
+    */
+   private static void pushFriend(ProfNetwork esql, String authUse, ArrayDeque<List<String>> stack) throws Exception {
+	System.out.print("\nType in the username of the person whose profile you want to see: ");
+        String toLook = in.readLine();
+        List<String> chain = stack.peek();
+        String from = chain.get(chain.size()-1);
+        if(!SocialGraph.get(esql).areFriends(from, toLook)){
+		System.out.print("Invalid input.\n");
+		return;
+	}
+        List<String> next = new ArrayList<String>();
+	if(isFriend(esql, authUse, toLook) == true){ // if travel from non-friend to a friend, reset connection level
+	   next.add(authUse);
+	}
+	else{
+	   next.addAll(chain);
+	}
+        next.add(toLook);
+        stack.push(next);
+   }
+
+   /*
+    * Checks every edge of chain in one round trip: the adjacent pairs are
+    * sent as a VALUES list and counted against CONNECTION_USR.
+    */
+   public static boolean isChainValid(ProfNetwork esql, List<String> chain) throws SQLException {
+      int pairs = chain.size() - 1;
+      if (pairs <= 0)
+         return true;
+      StringBuilder query = new StringBuilder("SELECT 1 FROM (VALUES ");
+      Object[] params = new Object[pairs * 2];
+      for (int i = 0; i < pairs; ++i){
+         query.append(i == 0 ? "" : ", ").append("(CAST(? AS varchar), CAST(? AS varchar))");
+         params[2*i] = chain.get(i);
+         params[2*i+1] = chain.get(i+1);
+      }
+      query.append(") AS P(a, b) WHERE NOT EXISTS (SELECT 1 FROM CONNECTION_USR C WHERE C.status = 'Accept' AND ")
+           .append("((C.userId = P.a AND C.connectionId = P.b) OR (C.userId = P.b AND C.connectionId = P.a)))");
+      // valid when no pair is missing its edge
+      return !esql.executeExists(query.toString(), params);
+   }
+
+   /*
+    * Prints the users whose username or name contains term, best matches
+    * first, SEARCH_PAGE_SIZE at a time. The ILIKE filter is served by the
+    * pg_trgm indexes on USR and results are ranked by trigram similarity.
+    */
+   public static void searchPeople(ProfNetwork esql, String term) throws Exception {
+      String query = "SELECT U.userId AS Username, U.name AS Name FROM USR U " +
+                     "WHERE U.userId ILIKE ? OR rtrim(U.name) ILIKE ? " +
+                     "ORDER BY greatest(similarity(U.userId, ?), similarity(rtrim(U.name), ?)) DESC, U.userId " +
+                     "LIMIT ? OFFSET ?";
+      // matches the term literally, without treating % and _ as wildcards
+      String pattern = "%" + term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+      int page = 0;
+      while (true) {
+         System.out.print("\n");
+         int shown = esql.executeQueryAndPrintResultOr(
+            page == 0 ? "Could not find anyone with that username or name" : "No more results",
+            query, pattern, pattern, term, term, SEARCH_PAGE_SIZE, page * SEARCH_PAGE_SIZE);
+         if (shown < SEARCH_PAGE_SIZE)
+            return;
+         System.out.println("\n1. Next page");
+         System.out.println("9. Done");
+         if (readChoice() != 1)
+            return;
+         ++page;
+      }
+   }
+
    public static void srcPpl(ProfNetwork esql, String authUse){
 	try{
 	  boolean srchmenu = true;
@@ -481,23 +867,14 @@ public class ProfNetwork {
                    case 1:
                         System.out.print("\nWho do you want to search for? ");
           		String srcT= in.readLine();
-          		String query = String.format("SELECT userId as Username, name as Name FROM USR WHERE (userId LIKE '%%");
-          		query = query + srcT + "%%') OR (name LIKE '%%" + srcT + "%%')";
-          		// System.out.print(query);
-          		int validIn = esql.executeQuery(query);
-          	        if(validIn < 1){
-                           System.out.print("\nCould not find anyone with that username or name");
-                           break;
-                        }
-                        esql.executeQueryAndPrintResult(query);
+          		searchPeople(esql, srcT);
                         break;
                    case 2:
 			System.out.print("\nEnter the username of the person whose profile you want to view\n\n\t ");
                         String srcTar= in.readLine();
 			System.out.print("\n");
-                        String query2 = String.format("SELECT* FROM USR WHERE userId = '%s'", srcTar);
-			int validIn2 = esql.executeQuery(query2);
-                        if(validIn2 != 1){                           
+                        String query2 = "SELECT 1 FROM USR WHERE userId = ?";
+                        if(!esql.executeExists(query2, srcTar)){
                            System.out.print("\nCould not find anyone with that username or name");
                            break;
                         }
@@ -515,16 +892,12 @@ public class ProfNetwork {
 
    public static void displayProf(ProfNetwork esql, String fName){
       try{
-         String query = String.format("SELECT U.name, U.userId, U.email, U.dateOfBirth FROM USR U WHERE U.userId = '%s'", fName);
-         System.out.print("\n");
-	 esql.executeQueryAndPrintResult(query);
-	 System.out.print("\nWork Experience");
-	 query = String.format("SELECT W.company, W.role, W.location, W.startDate, W.endDate FROM WORK_EXPR W WHERE W.userId = '%s'", fName);
-	 esql.executeQueryAndPrintResult(query);
-	 System.out.print("\nEducation");
-         query = String.format("SELECT E.instituitionName, E.major, E.degree, E.startDate, E.endDate FROM EDUCATIONAL_DETAILS E WHERE E.userId = '%s'", fName);
-         esql.executeQueryAndPrintResult(query);
-	 System.out.print("\n");
+         String profile = ProfileCache.get(fName);
+         if (profile == null){
+            profile = loadProfile(esql, fName);
+            ProfileCache.put(fName, profile);
+         }
+         System.out.print(profile);
          return;
       }catch(Exception e){
          System.err.println (e.getMessage ());
@@ -532,16 +905,55 @@ public class ProfNetwork {
       }
    }//end
 
+   /*
+    * Fetches a user's details, work experience and education in one round
+    * trip (one UNION ALL tagged by section) and renders them as displayProf
+    * prints them.
+    */
+   public static String loadProfile(ProfNetwork esql, String fName) throws SQLException {
+      String query =
+         "SELECT 0 AS part, CAST(U.name AS text), CAST(U.userId AS text), U.email, CAST(U.dateOfBirth AS text), CAST(NULL AS text) FROM USR U WHERE U.userId = ? " +
+         "UNION ALL SELECT 1, CAST(W.company AS text), CAST(W.role AS text), CAST(W.location AS text), CAST(W.startDate AS text), CAST(W.endDate AS text) FROM WORK_EXPR W WHERE W.userId = ? " +
+         "UNION ALL SELECT 2, CAST(E.instituitionName AS text), CAST(E.major AS text), CAST(E.degree AS text), CAST(E.startDate AS text), CAST(E.endDate AS text) FROM EDUCATIONAL_DETAILS E WHERE E.userId = ? " +
+         "ORDER BY part";
+      final String[] sections = { "\n", "\nWork Experience\n", "\nEducation\n" };
+      final String[] headers = {
+         "name\tuserid\temail\tdateofbirth\t",
+         "company\trole\tlocation\tstartdate\tenddate\t",
+         "instituitionname\tmajor\tdegree\tstartdate\tenddate\t" };
+      final int[] columns = { 4, 5, 5 };
+      final StringBuilder out = new StringBuilder();
+      // number of sections whose title has been written so far
+      final int[] titled = { 0 };
+      esql.executeQueryAndStream(query, new RowHandler() {
+         public void handle (ResultSet rs) throws SQLException {
+            int part = rs.getInt(1);
+            if (titled[0] <= part){
+               while (titled[0] <= part)
+                  out.append(sections[titled[0]++]);
+               out.append(headers[part]).append('\n');
+            }
+            for (int i = 2; i < 2 + columns[part]; ++i)
+               out.append(rs.getString(i)).append('\t');
+            out.append('\n');
+         }
+      }, fName, fName, fName);
+      while (titled[0] < sections.length)
+         out.append(sections[titled[0]++]);
+      out.append('\n');
+      return out.toString();
+   }//end loadProfile
 
     public static void dispFList(ProfNetwork esql, String authUse){
 	try{
-		String fListQ = String.format("SELECT C.connectionId AS Friends FROM connection_usr C WHERE C.userId = '%s' AND C.status = 'Accept' UNION SELECT C.userId FROM connection_usr C WHERE C.connectionId = '%s' AND C.status = 'Accept'", authUse, authUse);
-                int fListNum = esql.executeQuery(fListQ);
-                if (fListNum <= 0){
+		List<String> friends = SocialGraph.get(esql).friendsOf(authUse);
+                if (friends.isEmpty()){
 			System.out.println("\nNo connections yet");
                 }
                 else{
-                	esql.executeQueryAndPrintResult(fListQ);
+			System.out.println("friends (" + friends.size() + ")\t");
+			for (String friend : friends)
+				System.out.println(friend + "\t");
                 }
 	
 	}catch(Exception e){
@@ -606,27 +1018,25 @@ public class ProfNetwork {
                  case 1:
                     System.out.print("\tEnter new password: ");
                     String newPassword = in.readLine();
-                    query = String.format("UPDATE USR SET password = '%s' WHERE userId = '%s'", newPassword, login);
-                    esql.executeUpdate(query);
+                    query = "UPDATE USR SET password = ? WHERE userId = ?";
+                    esql.executeUpdate(query, Auth.hash(newPassword), login);
+                    Auth.invalidate(login);
+                    ProfileCache.invalidate(login);
                     break;
                  case 2:
                     System.out.print("\tEnter new full name: ");
                     String newFullName = in.readLine();
-                    query = String.format("UPDATE USR SET name = '%s' WHERE userId = '%s'", newFullName, login);
-                    esql.executeUpdate(query);
+                    query = "UPDATE USR SET name = ? WHERE userId = ?";
+                    esql.executeUpdate(query, newFullName, login);
+                    ProfileCache.invalidate(login);
                     break;
 		 case 3:
                     System.out.print("\tDid you already give us your work experience(Y/N)? ");
                     String contents = in.readLine();
                     if(contents.equals("Y")) {
                        boolean usermenu2 = true;
-
-                       System.out.print("\tEnter current company: ");
-                       String currentCompany = in.readLine();
-                       System.out.print("\tEnter current role: ");
-                       String currentRole = in.readLine();
-                       System.out.print("\tEnter current start date: ");
-                       String currentStartDate = in.readLine();
+                       ProfileEditSession edits = new ProfileEditSession(login);
+                       ProfileEditSession.Record record = editWorkExperience(edits);
 
                        while(usermenu2) {
                           System.out.println("1. Update company ");
@@ -634,42 +1044,38 @@ public class ProfNetwork {
                           System.out.println("3. Update location ");
                           System.out.println("4. Update start date ");
                           System.out.println("5. Update end date ");
+                          System.out.println("6. Edit another work experience ");
+                          System.out.println("8. Save changes (" + edits.pending() + " pending)");
                           System.out.println("9. EXIT");
                           switch (readChoice()) {
                              case 1:
                                 System.out.print("\tEnter new company: ");
-                                String newCompany = in.readLine();
-                                query = String.format("UPDATE WORK_EXPR SET company = '%s' WHERE userId = '%s' AND company = '%s' AND role = '%s' AND startDate = '%s'", newCompany, login, currentCompany, currentRole, currentStartDate);
-                                esql.executeUpdate(query);
-                                currentCompany = newCompany;
+                                record.set("company", in.readLine());
                                 break;
                              case 2:
                                 System.out.print("\tEnter new role: ");
-                                String newRole = in.readLine();
-                                query = String.format("UPDATE WORK_EXPR SET role = '%s' WHERE userId = '%s' AND company = '%s' AND role = '%s' AND startDate = '%s'", newRole, login, currentCompany, currentRole, currentStartDate);
-                                esql.executeUpdate(query);
-                                currentRole = newRole;
+                                record.set("role", in.readLine());
                                 break;
                              case 3:
                                 System.out.print("\tEnter new work location: ");
-                                String newLocation = in.readLine();
-                                query = String.format("UPDATE WORK_EXPR SET location = '%s' WHERE userId = '%s' AND company = '%s' AND role = '%s' AND startDate = '%s'", newLocation, login, currentCompany, currentRole, currentStartDate);
-                                esql.executeUpdate(query);
+                                record.set("location", in.readLine());
                                 break;
                              case 4:
                                 System.out.print("\tEnter new start date(year-month-date): ");
-                                String newWorkStartDate = in.readLine();
-                                query = String.format("UPDATE WORK_EXPR SET startDate = '%s' WHERE userId = '%s' AND company = '%s' AND role = '%s' AND startDate = '%s'", newWorkStartDate, login, currentCompany, currentRole, currentStartDate);
-                                esql.executeUpdate(query);
-                                currentStartDate = newWorkStartDate;
+                                record.set("startDate", in.readLine());
                                 break;
                              case 5:
                                 System.out.print("\tEnter new end date(year-month-date): ");
-                                String newWorkEndDate = in.readLine();
-                                query = String.format("UPDATE WORK_EXPR SET endDate = '%s' WHERE userId = '%s' AND company = '%s' AND role = '%s' AND startDate = '%s'", newWorkEndDate, login, currentCompany, currentRole, currentStartDate);
-                                esql.executeUpdate(query);
+                                record.set("endDate", in.readLine());
+                                break;
+                             case 6:
+                                record = editWorkExperience(edits);
+                                break;
+                             case 8:
+                                saveEdits(esql, edits);
                                 break;
                              case 9:
+                                saveEdits(esql, edits);
                                 usermenu2 =false;
                                 break;
                            }
@@ -686,8 +1092,9 @@ public class ProfNetwork {
                        String startDate = in.readLine();
                        System.out.print("\tAdd end date(year-month-date): ");
                        String endDate = in.readLine();
-                       query = String.format("INSERT INTO WORK_EXPR (userId, company, role, location, startDate, endDate) VALUES ('%s', '%s', '%s', '%s', '%s', '%s') ", login, company, role, location, startDate, endDate);
-                       esql.executeUpdate(query);
+                       query = "INSERT INTO WORK_EXPR (userId, company, role, location, startDate, endDate) VALUES (?, ?, ?, ?, CAST(? AS date), CAST(? AS date))";
+                       esql.executeUpdate(query, login, company, role, location, startDate, endDate);
+                       ProfileCache.invalidate(login);
                     }
                     break;
 		 case 4:
@@ -695,11 +1102,8 @@ public class ProfNetwork {
                     String contents1 = in.readLine();
                     if(contents1.equals("Y")) {
                        boolean usermenu1 = true;
-
-                       System.out.print("\tEnter current major: ");
-                       String currentMajor = in.readLine();
-                       System.out.print("\tEnter current degree: ");
-                       String currentDegree = in.readLine();
+                       ProfileEditSession edits = new ProfileEditSession(login);
+                       ProfileEditSession.Record record = editEducation(edits);
 
                        while(usermenu1) {
                           System.out.println("1. Update institution ");
@@ -707,42 +1111,39 @@ public class ProfNetwork {
                           System.out.println("3. Update degree ");
                           System.out.println("4. Update start date ");
                           System.out.println("5. Update end date ");
+                          System.out.println("6. Edit another education detail ");
+                          System.out.println("8. Save changes (" + edits.pending() + " pending)");
                           System.out.println(".........................");
 			  System.out.println("9. EXIT");
                           switch (readChoice()) {
                              case 1:
                                 System.out.print("\tEnter new institution: ");
-                                String newInstitution = in.readLine();
-                                query = String.format("UPDATE EDUCATIONAL_DETAILS SET instituitionname = '%s' WHERE userId = '%s' AND major = '%s' AND degree = '%s'", newInstitution, login, currentMajor, currentDegree);
-                                esql.executeUpdate(query);
+                                record.set("instituitionname", in.readLine());
                                 break;
                              case 2:
                                 System.out.print("\tEnter new major: ");
-                                String newMajor = in.readLine();
-                                query = String.format("UPDATE EDUCATIONAL_DETAILS SET major = '%s' WHERE userId = '%s' AND major = '%s' AND degree = '%s'", newMajor, login, currentMajor, currentDegree);
-                                esql.executeUpdate(query);
-                                currentMajor = newMajor;
+                                record.set("major", in.readLine());
                                 break;
                              case 3:
                                 System.out.print("\tEnter new degree: ");
-                                String newDegree = in.readLine();
-                                query = String.format("UPDATE EDUCATIONAL_DETAILS SET degree = '%s' WHERE userId = '%s' AND major = '%s' AND degree = '%s'", newDegree, login, currentMajor, currentDegree);
-                                esql.executeUpdate(query);
-                                currentDegree = newDegree;
+                                record.set("degree", in.readLine());
                                 break;
                              case 4:
                                 System.out.print("\tEnter new start date(year-month-date): ");
-                                String newEduStartDate = in.readLine();
-                                query = String.format("UPDATE EDUCATIONAL_DETAILS SET startDate = '%s' WHERE userId = '%s' AND major = '%s' AND degree = '%s'", newEduStartDate, login, currentMajor, currentDegree);
-                                esql.executeUpdate(query);
+                                record.set("startDate", in.readLine());
                                 break;
                              case 5:
                                 System.out.print("\tEnter new end date(year-month-date): ");
-                                String newEduEndDate = in.readLine();
-                                query = String.format("UPDATE EDUCATIONAL_DETAILS SET endDate = '%s' WHERE userId = '%s' AND major = '%s' AND degree = '%s'", newEduEndDate, login, currentMajor, currentDegree);
-                                esql.executeUpdate(query);
+                                record.set("endDate", in.readLine());
+                                break;
+                             case 6:
+                                record = editEducation(edits);
+                                break;
+                             case 8:
+                                saveEdits(esql, edits);
                                 break;
                              case 9:
+                                saveEdits(esql, edits);
                                 usermenu1 = false;
                                 break;
                           }
@@ -760,8 +1161,9 @@ public class ProfNetwork {
                        String startDate = in.readLine();
                        System.out.print("\tAdd end date(year-month-date): ");
                        String endDate = in.readLine();
-                       query = String.format("INSERT INTO EDUCATIONAL_DETAILS (userId, instituitionname, major, degree, startDate, endDate) VALUES ('%s', '%s', '%s', '%s', '%s', '%s') ", login, instituitionname, major, degree, startDate, endDate);
-                       esql.executeUpdate(query);
+                       query = "INSERT INTO EDUCATIONAL_DETAILS (userId, instituitionname, major, degree, startDate, endDate) VALUES (?, ?, ?, ?, CAST(? AS date), CAST(? AS date))";
+                       esql.executeUpdate(query, login, instituitionname, major, degree, startDate, endDate);
+                       ProfileCache.invalidate(login);
                     }
                     break;
 
@@ -778,27 +1180,75 @@ public class ProfNetwork {
       }
     }
 
+
+    /* Asks which work experience to edit next, by its current key */
+    private static ProfileEditSession.Record editWorkExperience(ProfileEditSession edits) throws IOException {
+        System.out.print("\tEnter current company: ");
+        String company = in.readLine();
+        System.out.print("\tEnter current role: ");
+        String role = in.readLine();
+        System.out.print("\tEnter current start date: ");
+        String startDate = in.readLine();
+        return edits.edit(ProfileEditSession.WORK_EXPR, company, role, startDate);
+    }
+
+    /* Asks which education detail to edit next, by its current key */
+    private static ProfileEditSession.Record editEducation(ProfileEditSession edits) throws IOException {
+        System.out.print("\tEnter current major: ");
+        String major = in.readLine();
+        System.out.print("\tEnter current degree: ");
+        String degree = in.readLine();
+        return edits.edit(ProfileEditSession.EDUCATIONAL_DETAILS, major, degree);
+    }
+
+    /*
+    * Writes the pending profile edits, one UPDATE per record and one JDBC
+    * batch per set of changed columns, all in one transaction.
+    */
+    private static void saveEdits(ProfNetwork esql, ProfileEditSession edits) throws SQLException {
+        int records = edits.changedRecords();
+        if (records == 0)
+            return;
+        int updated = edits.save(esql);
+        System.out.println("\tSaved changes to " + updated + " record(s)");
+        for (ProfileEditSession.Record r : edits.notFound())
+            System.out.println("\tNot saved, no longer found (edited or deleted meanwhile?): " + r);
+    }
+
 	
     /*
-    * Send message to anyone on network 
+    * Send message to anyone on network, to several people at once, or to all
+    * of your friends
     */
     public static void NewMessage(ProfNetwork esql, String senderId){
         try{
-            System.out.print("\tEnter receiverId: ");
-            String receiverId = in.readLine();
+            System.out.print("\tEnter receiverId (several separated by commas, * for all your friends): ");
+            String to = in.readLine();
             System.out.print("\tEnter draft message you want to send to receiver: ");
             String contents = in.readLine();
-
-            String query = String.format("INSERT INTO MESSAGE (senderId, receiverId, contents, deleteStatus, status) VALUES ('%s','%s','%s', 0,'%s')", senderId, receiverId, contents, "Draft");
-            esql.executeUpdate(query);
-
             System.out.print("\tDo you want to send the message you drafted(Y/N)? ");
-            contents = in.readLine();
-            if(contents.equals("Y")) {
-                System.out.print("\tMessage will be sent!\n");
-                query = String.format("UPDATE MESSAGE SET status = 'SENT' WHERE receiverId = '%s' AND senderId='%s'", receiverId, senderId);
-                esql.executeUpdate(query);
+            boolean send = in.readLine().equals("Y");
+
+            List<String> receivers = new ArrayList<String>();
+            if (to.trim().equals("*"))
+                receivers.addAll(SocialGraph.get(esql).friendsOf(senderId));
+            else
+                for (String r : to.split(","))
+                    if (r.trim().length() > 0 && !receivers.contains(r.trim()))
+                        receivers.add(r.trim());
+            if (receivers.isEmpty()) {
+                System.out.println("\tNo one to send it to");
+                return;
             }
+
+            List<List<String>> sent = sendMessage(esql, senderId, receivers, contents, send);
+            for (List<String> row : sent)
+                receivers.remove(row.get(1));
+            if (!receivers.isEmpty())
+                System.out.println("\tUsername wrong or does not exist: " + receivers);
+            if (!sent.isEmpty())
+                System.out.print("\tMessage " + (send ? "sent" : "saved as a draft") + " to " + sent.size() +
+                                 (sent.size() == 1 ? " person (msgId " + sent.get(0).get(0) + ")\n" : " people\n"));
             return ;
         }catch(Exception e){
          System.err.println (e.getMessage ());
@@ -806,36 +1256,45 @@ public class ProfNetwork {
       }
     }
 
+    /*
+    * Inserts one message from senderId to each existing user in receivers,
+    * already in its final state: Sent with the current time, or Draft. Each
+    * statement inserts a batch of rows, INSERT ... SELECT from USR so unknown
+    * receivers are skipped, and returns the msgIds the trigger assigned.
+    * Batches are powers of two up to MESSAGE_BATCH, keeping the statement
+    * cache to a handful of templates.
+    *
+    * @return msgId and receiverId of every message inserted
+    */
+    public static List<List<String>> sendMessage(ProfNetwork esql, String senderId, List<String> receivers,
+                                                 String contents, boolean send) throws SQLException {
+        List<List<String>> inserted = new ArrayList<List<String>>();
+        for (int from = 0; from < receivers.size(); ) {
+            int batch = Integer.highestOneBit(Math.min(receivers.size() - from, MESSAGE_BATCH));
+            StringBuilder list = new StringBuilder();
+            Object[] params = new Object[batch + 3];
+            params[0] = senderId;
+            params[1] = contents;
+            params[2] = send ? "Sent" : "Draft";
+            for (int i = 0; i < batch; ++i) {
+                list.append(i > 0 ? ",?" : "?");
+                params[i + 3] = receivers.get(from + i);
+            }
+            String query = "INSERT INTO MESSAGE (senderId, receiverId, contents, sendTime, deleteStatus, status) " +
+                           "SELECT ?, U.userId, ?, now(), 0, ? FROM USR U " +
+                           "WHERE U.userId IN (" + list + ") RETURNING msgId, receiverId";
+            inserted.addAll(esql.executeQueryAndReturnResult(query, params));
+            from += batch;
+        }
+        return inserted;
+    }
+
     /* Send request for connection  */
     public static void SendRequest(ProfNetwork esql, String authU){ //TODO: input validation
 	try{
 	System.out.print("\n\tWho would you like to send a request to?\n\t");
         String conRec = in.readLine();
-	String query = String.format("SELECT * FROM USR WHERE userId = '%s'", conRec);
-        int validIn = esql.executeQuery(query);
-	if(validIn != 1){
-	   System.out.print("\nUsername wrong or does not exist");
-	   return;
-	}
-	query = String.format("SELECT * FROM connection_usr C WHERE ((C.userId = '%s' AND C.connectionId = '%s') OR (C.userId = '%s' AND C.connectionId = '%s')) AND C.status IN ('Accept','Request')");
-	if(esql.executeQuery(query) > 0){System.out.println("\nThere is currently an active request between you two. Check your request dashboard!"); return;}
-	List<List<String>> firstLevel  = new ArrayList<List<String>>();
-        query= String.format("SELECT DISTINCT C.connectionId FROM connection_usr C WHERE C.userId = '%s' AND (C.status = 'Accept' OR C.status = 'Request') UNION SELECT DISTINCT C.userId FROM connection_usr C WHERE C.connectionId = '%s' AND (C.status = 'Accept' OR C.status = 'Request')", authU, authU);
-        // System.out.print("\ngetting list 1");
-        firstLevel = esql.executeQueryAndReturnResult(query);
-        Iterator<List<String>> listIt = firstLevel.iterator();
-        while(listIt.hasNext()){
-	   String debug = "Comparing " + listIt.next().get(0) + " and " + conRec;
-	   System.out.println(debug);
-	   if(listIt.next().get(0).equals(conRec)== true){
-	      System.out.println("User is already a friend"); 
-	      return;
-	   }
-	}
-        query = String.format("INSERT INTO CONNECTION_USR (userId, connectionId, status) VALUES ('%s', '%s', 'Request')", authU, conRec);
-	esql.executeUpdate(query);
-	
-	System.out.print("Request Sent!\n");
+	printOutcome(ConnectionRequests.request(esql, authU, conRec));
 	}catch(Exception e){
          System.err.println (e.getMessage ());
          return;
@@ -844,32 +1303,24 @@ public class ProfNetwork {
 
     public static void SendRequestTO(ProfNetwork esql, String authU, String recip){
       try{
-	String query = String.format("SELECT * FROM USR WHERE userId = '%s'", recip);
-        int validIn = esql.executeQuery(query);
-        if(validIn != 1){
-           System.out.print("\nUsername wrong or does not exist");
-           return;
-        }
-	List<List<String>> firstLevel  = new ArrayList<List<String>>();
-        query= String.format("SELECT DISTINCT C.connectionId FROM connection_usr C WHERE C.userId = '%s' AND (C.status = 'Accept' OR C.status = 'Request') UNION SELECT DISTINCT C.userId FROM connection_usr C WHERE C.connectionId = '%s' AND (C.status = 'Accept' OR C.status = 'Request')", authU, authU);
-	firstLevel = esql.executeQueryAndReturnResult(query);
-        Iterator<List<String>> listIt = firstLevel.iterator();
-        while(listIt.hasNext()){
-           if(listIt.next().get(0).equals(recip)== true){
-	      System.out.println("User is already a friend"); 
-	      return;
-	   }
-        }
-
-	query = String.format("INSERT INTO CONNECTION_USR (userId, connectionId, status) VALUES ('%s', '%s', 'Request')", authU, recip);
-        esql.executeUpdate(query);
-        System.out.print("Request Sent!\n");
+	printOutcome(ConnectionRequests.request(esql, authU, recip));
       }catch(Exception e){
          System.err.println (e.getMessage ());
          return ;
       }
     }
 
+    /* Tells the user what became of their request */
+    private static void printOutcome(ConnectionRequests.Outcome sent){
+      switch (sent){
+         case SENT: System.out.print("Request Sent!\n"); break;
+         case ACCEPTED: System.out.println("They had already sent you a request, you are now connected!"); break;
+         case PENDING: System.out.println("\nThere is currently an active request between you two. Check your request dashboard!"); break;
+         case FRIENDS: System.out.println("User is already a friend"); break;
+         default: System.out.print("\nUsername wrong or does not exist");
+      }
+    }
+
     public static void ReqDash(ProfNetwork esql, String authU){
       try{
         boolean rD = true;
@@ -879,18 +1330,19 @@ public class ProfNetwork {
             System.out.println("1. View Requests You Made");
             System.out.println("2. View Incoming Requests");    
 	    System.out.println("3. Send Requests (limit 5 non friends for new users)");
+	    System.out.println("4. People You May Know");
 	    System.out.println(".........................");
 	    System.out.println("9. Go Back");
             switch (readChoice()){
                case 1: 
-		 String query1 = String.format("SELECT C.connectionId AS Recipient, C.status FROM CONNECTION_USR C WHERE C.userId = '%s'", authU);
+		 String query1 = "SELECT C.connectionId AS Recipient, C.status FROM CONNECTION_USR C WHERE C.userId = ?";
                  System.out.print("\n");
-                 if(esql.executeQueryAndPrintResult(query1) == 0) {System.out.println("Nothing here\n");}
+                 esql.executeQueryAndPrintResultOr("Nothing here\n", query1, authU);
 		 break;
                case 2:
-                 String query2 = String.format("SELECT C.userId AS Sender FROM CONNECTION_USR C WHERE C.connectionId = '%s' AND status = 'Request'", authU);
+                 String query2 = "SELECT C.userId AS Sender FROM CONNECTION_USR C WHERE C.connectionId = ? AND status = 'Request'";
                  System.out.print("\n");
-                 if(esql.executeQueryAndPrintResult(query2) == 0) {System.out.println("Nothing here\n"); break;}
+                 if(esql.executeQueryAndPrintResultOr("Nothing here\n", query2, authU) == 0) break;
 		 acceptRequest(esql, authU);
                  break;
                case 3: 
@@ -899,60 +1351,25 @@ public class ProfNetwork {
 		 System.out.println("\nNew users can send up to 5 requests\nAll users can request to connect with 2nd and 3rd level connections. Consider doing this from your friendlist! \n\tWho would you like to send a request to?\t");
         	 // test: connection target exist?
 		 String conRec = in.readLine();
-        	 String query3 = String.format("SELECT * FROM USR U WHERE U.userId = '%s'", conRec);
-        	 int validIn3 = esql.executeQuery(query3);
-		 if(validIn3 != 1){
+        	 String query3 = "SELECT 1 FROM USR U WHERE U.userId = ?";
+		 if(!esql.executeExists(query3, conRec)){
            	    System.out.println("Username wrong or does not exist\n");
                     break;
 		 }
-		 // test: can the user make the connection without friendship level?
-		 String queryV = String.format("SELECT * FROM USR U WHERE U.userId = '%s' AND U.fCon > 0", authU);
-                 int validR = esql.executeQuery(queryV); 
-		 if(validR != 1){
-                    List<List<String>> firstLevel  = new ArrayList<List<String>>();
-                    List<List<String>> secondLevel = new ArrayList<List<String>>();
-                    List<List<String>> thirdLevel  = new ArrayList<List<String>>();
-                    query3= String.format("SELECT DISTINCT C.connectionId FROM connection_usr C WHERE C.userId = '%s' AND C.status = 'Accept' UNION SELECT DISTINCT C.userId FROM connection_usr C WHERE C.connectionId = '%s' AND C.status = 'Accept'", authU, authU);
-                    // System.out.print("\ngetting list 1");
-		    firstLevel = esql.executeQueryAndReturnResult(query3);
-                    String temp = "";
-                    Iterator<List<String>> listIt = firstLevel.iterator();
-                    // System.out.print("\nmaking list of second connections");
-		    while(listIt.hasNext()){
-                       temp = listIt.next().get(0);
-                       query3 = String.format("SELECT DISTINCT C.connectionId FROM connection_usr C WHERE C.userId = '%s' AND C.status = 'Accept' UNION SELECT DISTINCT C.userId FROM connection_usr C WHERE C.connectionId = '%s' AND C.status = 'Accept'", temp, temp);
-                       secondLevel.addAll(esql.executeQueryAndReturnResult(query3));
-                    }
-                    Iterator<List<String>> listIt2 = secondLevel.iterator();
-                    // System.out.print("\nmaking list of third connections");
-		    while(listIt2.hasNext()){
-                       temp = listIt2.next().get(0);
-                       query3 = String.format("SELECT DISTINCT C.connectionId FROM connection_usr C WHERE C.userId = '%s' AND C.status = 'Accept' UNION SELECT DISTINCT C.userId FROM connection_usr C WHERE C.connectionId = '%s' AND C.status = 'Accept'", temp, temp);
-                       thirdLevel.addAll(esql.executeQueryAndReturnResult(query3));
-                    }
-                    thirdLevel.addAll(secondLevel);
-                    Iterator<List<String>> listIt3 = thirdLevel.iterator();
-		    boolean isFriend = false;
-		    String debug = "";
-		    // System.out.println("\n Is the recip a friend?");
-		    while (listIt3.hasNext()){
-		       //debug = "Testing " + listIt3.next().get(0) + " == " + conRec; 
-		       //System.out.println(debug);
-		       if(listIt3.next().get(0).equals(conRec)== true){
-                          // System.out.println("\nRecip is friend!");
-			  SendRequestTO(esql, authU, conRec);
-			  isFriend = true;
-			  break;
-                       }
-		    }
-		    if(isFriend == false){System.out.println("Sorry, this person is not a 2nd or 3rd connection\n");}
-                 }
-		 else {
-		   SendRequestTO(esql, authU, conRec);
-		   query3 = String.format("UPDATE USR SET fCon = fCon - 1 WHERE userId = '%s'", authU);
-		   esql.executeUpdate(query3);
+		 // 2nd and 3rd level connections are free, anyone else takes one of the new user requests
+		 if(withinHops(esql, authU, conRec, 3)){
+		    SendRequestTO(esql, authU, conRec);
 		 }
+		 else if(SocialGraph.get(esql).isLinked(authU, conRec)){
+		    System.out.println("\nThere is currently an active request between you two. Check your request dashboard!");
+		 }
+		 else if(RequestQuota.trySend(esql, authU, conRec)){
+		    SocialGraph.get(esql).addRequest(authU, conRec);
+		    System.out.print("Request Sent!\n");
+		 }
+		 else{System.out.println("Sorry, this person is not a 2nd or 3rd connection and you have no requests left\n");}
                  break;
+               case 4: peopleYouMayKnow(esql, authU); break;
                case 9: rD = false; break;
                default : System.out.println("Unrecognized choice!"); break;
             }//end switch
@@ -965,6 +1382,34 @@ public class ProfNetwork {
 
 
 
+    /*
+    * Shows the user's top suggestions, precomputed by Recommender, and sends
+    * a request to one of them. Suggestions are 2nd degree connections, so
+    * this does not count against the new user request limit; anyone else
+    * has to be asked through option 3 of the request dashboard.
+    */
+    public static void peopleYouMayKnow(ProfNetwork esql, String authU) throws Exception {
+        List<Recommender.Suggestion> suggestions = new Recommender(esql, Recommender.DEFAULT_K).suggest(authU);
+        if (suggestions.isEmpty()) {
+            System.out.println("\nNo suggestions yet, connect with a few people first");
+            return;
+        }
+        System.out.println(String.format("\n%-30s %6s %9s %7s", "Person", "Mutual", "Companies", "Schools"));
+        for (Recommender.Suggestion s : suggestions)
+            System.out.println(String.format("%-30s %6d %9d %7d", s.userId, s.mutualFriends, s.sharedCompanies, s.sharedInstitutions));
+        System.out.print("\tSend a request to (blank to go back): ");
+        String to = in.readLine().trim();
+        if (to.length() == 0)
+            return;
+        for (Recommender.Suggestion s : suggestions) {
+            if (s.userId.equals(to)) {
+                SendRequestTO(esql, authU, to);
+                return;
+            }
+        }
+        System.out.println("\nThat person is not one of your suggestions, use Send Requests instead");
+    }
+
     /* View user's messages and have the option to delete them*/
     public static void ViewMessage(ProfNetwork esql, String authU){ //deleteStatus 3=both, 2 = receiverDeleted, 1 = senderDeleted, 0 = neitherDeleted
         try{
@@ -972,6 +1417,9 @@ public class ProfNetwork {
             while(messMenu){
 	       System.out.println("\nMESSAGE DASHBOARD");
                System.out.println("---------");
+               // counted from the unread index, only the unread rows are touched
+               String unread = "SELECT count(*) FROM MESSAGE WHERE receiverId = ? AND status = 'Sent' AND deleteStatus IN (0,1)";
+               System.out.println("You have " + esql.executeQueryAndReturnResult(unread, authU).get(0).get(0) + " new message(s)");
                System.out.println("1. Sent Messages");
                System.out.println("2. Receieved Messages");
                System.out.println("3. New Message");
@@ -979,18 +1427,10 @@ public class ProfNetwork {
 	       System.out.println("9. Go Back");
                switch (readChoice()){
                   case 1:
-                     String query1 = String.format("SELECT msgId, receiverId AS Recipient, sendTime AS Time, contents FROM message WHERE senderId = '%s' AND deleteStatus IN (0,2)", authU);
-                     if(esql.executeQueryAndPrintResult(query1) == 0) {System.out.println("No sent messages"); break;}
-                     System.out.println();
-		     DeleteMessage(esql, authU, true);
+                     showMessages(esql, authU, true);
                      break;
                   case 2:
-                     String query2 = String.format("UPDATE MESSAGE SET status = 'Delivered' WHERE status <> 'Read' AND receiverId = '%s' AND deleteStatus IN (1,0)", authU);
-		     esql.executeUpdate(query2);
-                     query2 = String.format("SELECT msgId, senderId AS Sender, sendTime AS Time, contents FROM message WHERE receiverId = '%s' AND deleteStatus IN (0,1)", authU);
-                     if(esql.executeQueryAndPrintResult(query2) == 0) {System.out.println("No new messages"); break;}
-                     System.out.println();
-		     DeleteMessage(esql,authU, false);
+                     showMessages(esql, authU, false);
 		     break;
                   case 3: 
 		     NewMessage(esql, authU);
@@ -1005,109 +1445,208 @@ public class ProfNetwork {
       }
     }
 
-    /* Delete a message */
-    public static void DeleteMessage(ProfNetwork esql, String userId, boolean sender){ //deleteStatus 3=bothDel, 2 = receiverDel, 1 = senderDel, 0 = neitherDel
+    /*
+    * Pages through the outbox (sent) or inbox, newest first, MESSAGE_PAGE_SIZE
+    * at a time. Pages are keyset based: each page starts below the
+    * (sendTime, msgId) of the last row shown, which the message_inbox and
+    * message_outbox indexes find directly, so a page costs the same however
+    * long the history. Once the messages left in MESSAGE run out the pages
+    * carry on into the years archived to MESSAGE_ARCHIVE, read through
+    * message_archive_page, which only runs for a page MESSAGE cannot fill.
+    * Inbox messages are marked Delivered as their page is shown.
+    */
+    private static void showMessages(ProfNetwork esql, String authU, boolean sent) throws Exception {
+        String query = sent
+           ? "SELECT msgId, receiverId AS Recipient, sendTime AS Time, contents FROM MESSAGE " +
+             "WHERE senderId = ? AND deleteStatus IN (0,2) "
+           : "SELECT msgId, senderId AS Sender, sendTime AS Time, contents FROM MESSAGE " +
+             "WHERE receiverId = ? AND deleteStatus IN (0,1) AND status <> 'Draft' ";
+        query = "WITH hot AS (" + query + "AND (sendTime, msgId) < (CAST(? AS timestamp), ?) " +
+                "ORDER BY sendTime DESC, msgId DESC LIMIT ?) " +
+                "SELECT * FROM hot UNION ALL " +
+                "SELECT * FROM message_archive_page(?, ?, CAST(? AS timestamp), ?, ?) " +
+                "WHERE (SELECT count(*) FROM hot) < ? " +
+                "ORDER BY Time DESC, msgId DESC LIMIT ?";
+        // the first page starts above every message
+        String fromTime = "infinity";
+        int fromId = Integer.MAX_VALUE;
+        boolean first = true;
+        while (true) {
+            final String[] lastTime = { null };
+            final int[] lastId = { 0 };
+            final List<Object> shown = new ArrayList<Object>();
+            System.out.print("\n");
+            int rows = esql.executeQueryAndPrintAndStream(query, new RowHandler() {
+                public void handle(ResultSet rs) throws SQLException {
+                    lastId[0] = rs.getInt(1);
+                    lastTime[0] = rs.getString(3);
+                    shown.add(lastId[0]);
+                }
+            }, authU, fromTime, fromId, MESSAGE_PAGE_SIZE,
+               authU, sent ? "S" : "R", fromTime, fromId, MESSAGE_PAGE_SIZE, MESSAGE_PAGE_SIZE, MESSAGE_PAGE_SIZE);
+            if (rows == 0) {
+                System.out.println(!first ? "No more messages" : sent ? "No sent messages" : "No new messages");
+                return;
+            }
+            if (!sent)
+                markDelivered(esql, shown);
+            System.out.println();
+            if (rows == MESSAGE_PAGE_SIZE)
+                System.out.println("1. Next page");
+            System.out.println("2. Delete messages");
+            System.out.println("3. Delete messages by date or " + (sent ? "recipient" : "sender"));
+            System.out.println("9. Go back");
+            switch (readChoice()) {
+                case 1:
+                    if (rows == MESSAGE_PAGE_SIZE) {
+                        fromTime = lastTime[0];
+                        fromId = lastId[0];
+                        first = false;
+                    }
+                    break;
+                case 2:
+                    System.out.print("\tEnter the msgIds you want to delete, separated by commas: ");
+                    DeleteMessage(esql, authU, sent, in.readLine());
+                    break;
+                case 3:
+                    System.out.print("\tDelete messages sent before (YYYY-MM-DD, blank for any date): ");
+                    String before = in.readLine().trim();
+                    System.out.print("\tDelete messages " + (sent ? "to" : "from") + " (username, blank for anyone): ");
+                    String other = in.readLine().trim();
+                    int deleted = deleteMessagesWhere(esql, authU, sent, before.length() == 0 ? null : before,
+                                                      other.length() == 0 ? null : other);
+                    System.out.println(deleted + " message(s) deleted");
+                    break;
+                case 9: return;
+                default : System.out.println("Unrecognized choice!"); break;
+            }
+        }
+    }
+
+    /*
+    * Marks the given inbox messages Delivered, unless already Read. The list
+    * is padded to a full page so every call uses the same statement.
+    */
+    private static void markDelivered(ProfNetwork esql, List<Object> msgIds) throws SQLException {
+        StringBuilder list = new StringBuilder();
+        Object[] params = new Object[MESSAGE_PAGE_SIZE];
+        for (int i = 0; i < MESSAGE_PAGE_SIZE; ++i) {
+            list.append(i > 0 ? ",?" : "?");
+            params[i] = msgIds.get(Math.min(i, msgIds.size() - 1));
+        }
+        esql.executeUpdate("UPDATE MESSAGE SET status = 'Delivered' WHERE msgId IN (" + list + ") AND status = 'Sent'", params);
+    }
+
+    /* Delete some of the user's messages, from the outbox (sender) or the inbox, by msgId */
+    public static void DeleteMessage(ProfNetwork esql, String userId, boolean sender, String msgIds){ //deleteStatus bits: 1 = senderDel, 2 = receiverDel
         try{
-	   while(true){
-	      System.out.println("Do you want to delete a message?");
-	      System.out.println("1. Yes");
-	      System.out.println("2. No");
-	      switch(readChoice()){
-	         case 1: 
-                    System.out.print("\tEnter msgId you want to delete: ");
-                    String msgId = in.readLine();
-		    String query = String.format("SELECT deleteStatus FROM MESSAGE WHERE msgId = %s", msgId);
-                    List<List<String>> delStat = new ArrayList<List<String>>(esql.executeQueryAndReturnResult(query));
-		    // maybe some input val here for "not your message
-		    if(sender){
-		       switch(Integer.parseInt(delStat.get(0).get(0))){
-		          case 0:
-			     query = String.format("UPDATE MESSAGE SET deleteStatus = 1 WHERE msgId = %s", msgId);
-			     break;
-			  case 1:
-			     System.out.println("This message is not in your inbox, try another");
-			     break;
-			  case 2:
-			     query = String.format("UPDATE MESSAGE SET deleteStatus = 3 WHERE msgId = %s", msgId);
-			     break;
-			  case 3:
-                             System.out.println("This message is not in your inbox, try another");
-                             break;
-			  default: 	return;   
-                       }
-		       esql.executeUpdate(query);
-                       System.out.println("Message has been deleted!");
-		       break;
-		    }
-		    else{
-                       switch(Integer.parseInt(delStat.get(0).get(0))){
-                          case 0:
-                             query = String.format("UPDATE MESSAGE SET deleteStatus = 2 WHERE msgId = %s", msgId);
-                             break;
-                          case 1:
-			     query = String.format("UPDATE MESSAGE SET deleteStatus = 3 WHERE msgId = %s", msgId);
-                             break;
-                          case 2:
-                             System.out.println("This message is not in your inbox, try another");
-                             break;
-                          case 3:
-                             System.out.println("This message is not in your inbox, try another");
-                             break;
-                          default:      return;
-		       }
-		       esql.executeUpdate(query);
-                       System.out.println("Message has been deleted!");
-                       
-		    }
-		 break;
-                 case 2: return;
-		 default : System.out.println("Unrecognized choice!"); break; 
-	      }
-	   }
+	   List<Integer> ids = new ArrayList<Integer>();
+	   for (String id : msgIds.split(","))
+	      if (id.trim().length() > 0)
+	         ids.add(Integer.parseInt(id.trim()));
+	   int deleted = deleteMessages(esql, userId, sender, ids);
+	   System.out.println(deleted + " message(s) deleted");
+	   if (deleted < ids.size())
+	      System.out.println((ids.size() - deleted) + " of them were not in your " + (sender ? "outbox" : "inbox"));
+        }catch(NumberFormatException e){
+         System.out.println("Invalid msgId, nothing deleted");
         }catch(Exception e){
          System.err.println (e.getMessage ());
          return;
       }
     }
 
+    /*
+    * Marks msgIds deleted for their sender (bit 1) or receiver (bit 2) by
+    * OR-ing the bit into deleteStatus in the UPDATE itself, so there is no
+    * read before the write and no lost update when the other party deletes
+    * at the same time; a message reaching 3 is left for MessagePurger. Ids
+    * that aren't the user's, or are already deleted on their side, are
+    * skipped. Batches are padded to a power of two, up to MESSAGE_BATCH.
+    *
+    * @return the number of messages deleted
+    */
+    public static int deleteMessages(ProfNetwork esql, String userId, boolean sender, List<Integer> msgIds) throws SQLException {
+        int deleted = 0;
+        for (int from = 0; from < msgIds.size(); from += MESSAGE_BATCH) {
+            int n = Math.min(MESSAGE_BATCH, msgIds.size() - from);
+            int padded = Integer.highestOneBit(n) == n ? n : Integer.highestOneBit(n) << 1;
+            StringBuilder list = new StringBuilder();
+            Object[] params = new Object[padded + 3];
+            params[0] = sender ? 1 : 2;
+            params[1] = userId;
+            params[2] = params[0];
+            for (int i = 0; i < padded; ++i) {
+                list.append(i > 0 ? ",?" : "?");
+                params[i + 3] = msgIds.get(from + Math.min(i, n - 1));
+            }
+            deleted += esql.executeUpdate("UPDATE MESSAGE SET deleteStatus = coalesce(deleteStatus, 0) | ? " +
+                                          "WHERE " + (sender ? "senderId" : "receiverId") + " = ? " +
+                                          "AND (coalesce(deleteStatus, 0) & ?) = 0 AND msgId IN (" + list + ")", params);
+        }
+        return deleted;
+    }
+
+    /*
+    * Like deleteMessages, for every message of the user's outbox (sender) or
+    * inbox sent before a date and/or to or from one other user, in one
+    * statement. A null filter matches everything.
+    *
+    * @return the number of messages deleted
+    */
+    public static int deleteMessagesWhere(ProfNetwork esql, String userId, boolean sender, String before, String other) throws SQLException {
+        List<Object> params = new ArrayList<Object>();
+        params.add(sender ? 1 : 2);
+        params.add(userId);
+        params.add(params.get(0));
+        String query = "UPDATE MESSAGE SET deleteStatus = coalesce(deleteStatus, 0) | ? " +
+                       "WHERE " + (sender ? "senderId" : "receiverId") + " = ? AND (coalesce(deleteStatus, 0) & ?) = 0";
+        if (!sender)
+            query += " AND status <> 'Draft'";
+        if (before != null) {
+            query += " AND sendTime < CAST(? AS date)";
+            params.add(before);
+        }
+        if (other != null) {
+            query += " AND " + (sender ? "receiverId" : "senderId") + " = ?";
+            params.add(other);
+        }
+        return esql.executeUpdate(query, params.toArray());
+    }
+
    public static void acceptRequest(ProfNetwork esql, String authU){
       try{
          boolean AC = true;
          while(AC) {
             System.out.println("1. Accept Request");
 	    System.out.println("2. Decline Request");
-	    System.out.println(".........................");
-	    System.out.println("9. Go back");
+	    System.out.println("3. Go back");
+	    System.out.println("4. Accept All Requests");
+	    System.out.println("5. Decline All Requests");
             switch (readChoice()){
 	       case 1:
 	       System.out.print("Whose request? ");
 	       String aFrom = in.readLine();
-               String queryY = String.format("SELECT C.userId FROM connection_usr C WHERE C.userId = '%s' AND C.userId IN (SELECT C.userId Sender FROM CONNECTION_USR C WHERE C.connectionId = '%s' AND status = 'Request')", aFrom, authU);
-               int validInY = esql.executeQuery(queryY);
-               if(validInY == 1){
-                  queryY = String.format("UPDATE connection_usr SET status = 'Accept' WHERE connectionId = '%s' and userId = '%s'", authU, aFrom);
-                  esql.executeUpdate(queryY);
-		  break;
-               }else{
-                  System.out.println("Username wrong or does not exist\n");
+               if(!ConnectionRequests.accept(esql, aFrom, authU)){
+                  System.out.println("No pending request from that user\n");
 	       }
 	       break;
 	       case 2:
                System.out.print("Whose request? ");
                String rFrom = in.readLine();
-               String queryR = String.format("SELECT C.userId FROM connection_usr C WHERE C.userId = '%s' AND C.userId IN (SELECT C.userId Sender FROM CONNECTION_USR C WHERE C.connectionId = '%s' AND status = 'Request')", rFrom, authU);
-               int validInR = esql.executeQuery(queryR);
-               if(validInR == 1){
-                  queryR = String.format("UPDATE connection_usr SET status = 'Reject' WHERE connectionId = '%s' and userId = '%s'", authU, rFrom);
-                  esql.executeUpdate(queryR);
-		  break;
-               }else{
-                  System.out.println("Username wrong or does not exist\n");
+               if(!ConnectionRequests.reject(esql, rFrom, authU)){
+                  System.out.println("No pending request from that user\n");
                }
                break;
 	       case 3:
                   AC = false;
                   break;
+	       case 4:
+	          System.out.println("Accepted " + ConnectionRequests.acceptAll(esql, authU).size() + " request(s)\n");
+	          break;
+	       case 5:
+	          System.out.println("Declined " + ConnectionRequests.rejectAll(esql, authU).size() + " request(s)\n");
+	          break;
 	       default: System.out.println("\nInvalid Choice!");
 	    }
 	}
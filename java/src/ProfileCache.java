@@ -0,0 +1,83 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps recently displayed profiles, already rendered, so that
+ * walking the friend graph does not fetch the same profile over and over.
+ *
+ * The cache is process wide and bounded by the total length of the cached
+ * text; the least recently used profiles are dropped first. Entries also
+ * expire after TTL_MILLIS, and every write to a user's profile must call
+ * invalidate so the next view reloads it.
+ */
+public class ProfileCache {
+
+   // how long a cached profile may be shown before it is reloaded
+   private static final long TTL_MILLIS = 60000;
+
+   // upper bound on the characters held by all cached profiles together
+   private static final long MAX_CHARS = 1L << 20;
+
+   private static class Entry {
+      final String profile;
+      final long expires;
+
+      Entry (String profile, long expires) {
+         this.profile = profile;
+         this.expires = expires;
+      }
+   }//end Entry
+
+   private static final LinkedHashMap<String, Entry> profiles = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+   private static long chars = 0;
+
+   /**
+    * @param userId the user whose profile is wanted
+    * @return the cached rendered profile, or null when absent or expired
+    */
+   public static synchronized String get(String userId){
+      Entry e = profiles.get(userId);
+      if (e == null)
+         return null;
+      if (e.expires < System.currentTimeMillis()){
+         remove(userId);
+         return null;
+      }//end if
+      return e.profile;
+   }//end get
+
+   /**
+    * Caches a rendered profile, evicting the least recently used ones if the
+    * cache grows past its size bound.
+    */
+   public static synchronized void put(String userId, String profile){
+      if (profile.length() > MAX_CHARS)
+         return;
+      remove(userId);
+      profiles.put(userId, new Entry(profile, System.currentTimeMillis() + TTL_MILLIS));
+      chars += profile.length();
+      Iterator<Map.Entry<String, Entry>> it = profiles.entrySet().iterator();
+      while (chars > MAX_CHARS && it.hasNext()){
+         chars -= it.next().getValue().profile.length();
+         it.remove();
+      }//end while
+   }//end put
+
+   /**
+    * Drops a user's cached profile; call after any write to USR, WORK_EXPR
+    * or EDUCATIONAL_DETAILS for that user.
+    */
+   public static synchronized void invalidate(String userId){
+      remove(userId);
+   }//end invalidate
+
+   private static void remove(String userId){
+      Entry e = profiles.remove(userId);
+      if (e != null)
+         chars -= e.profile.length();
+   }//end remove
+
+}//end ProfileCache
@@ -0,0 +1,210 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class collects the field changes one user makes to their work
+ * experience and education records in UpdateProfile and writes them behind.
+ * Nothing reaches the database until save. Save turns all the pending
+ * changes of one record into a single multi-column UPDATE on its primary
+ * key. The UPDATEs of all records go out as JDBC batches in one transaction.
+ * Records whose changes touch the same columns share a statement template,
+ * so they also share a batch. A record whose UPDATE matched no row, because
+ * it was edited or deleted elsewhere meanwhile, keeps its old key, loses
+ * its changes and is reported by notFound.
+ */
+public class ProfileEditSession {
+
+   /**
+    * An editable table: its columns in the order SET lists them, and the
+    * columns that follow userId in its primary key.
+    */
+   public static class Table {
+      final String name;
+      final String[] columns;
+      final String[] key;
+
+      Table (String name, String[] columns, String[] key) {
+         this.name = name;
+         this.columns = columns;
+         this.key = key;
+      }
+   }//end Table
+
+   public static final Table WORK_EXPR = new Table("WORK_EXPR",
+      new String[] { "company", "role", "location", "startDate", "endDate" },
+      new String[] { "company", "role", "startDate" });
+
+   public static final Table EDUCATIONAL_DETAILS = new Table("EDUCATIONAL_DETAILS",
+      new String[] { "instituitionname", "major", "degree", "startDate", "endDate" },
+      new String[] { "major", "degree" });
+
+   /**
+    * One record being edited: its key as last saved, and its pending changes
+    * by column.
+    */
+   public static class Record {
+      final Table table;
+      final String[] key;
+      final Map<String, String> changes = new LinkedHashMap<String, String>();
+
+      Record (Table table, String[] key) {
+         this.table = table;
+         this.key = key;
+      }
+
+      /**
+       * Stages a new value for column, replacing any value staged before.
+       */
+      public void set(String column, String value){
+         this.changes.put(column, value);
+      }//end set
+
+      /**
+       * @return the table and key the record was last saved under
+       */
+      public String toString(){
+         StringBuilder sb = new StringBuilder(this.table.name);
+         for (int k = 0; k < this.key.length; ++k)
+            sb.append(k == 0 ? " (" : ", ").append(this.table.key[k]).append(" = ").append(this.key[k]);
+         return sb.append(")").toString();
+      }//end toString
+
+      /* the value column will have once saved, for key columns */
+      String current(int k){
+         String changed = this.changes.get(this.table.key[k]);
+         return changed != null ? changed : this.key[k];
+      }//end current
+   }//end Record
+
+   private final String userId;
+   private final List<Record> records = new ArrayList<Record>();
+   private final List<Record> notFound = new ArrayList<Record>();
+
+   /**
+    * @param userId the user whose records are edited
+    */
+   public ProfileEditSession (String userId) {
+      this.userId = userId;
+   }//end ProfileEditSession
+
+   /**
+    * Returns the record of table with the given key values, as it will be
+    * once saved. If the session is already editing that record, it returns
+    * the same Record, so changes to it keep adding up.
+    */
+   public Record edit(Table table, String... key){
+      for (Record r : this.records){
+         if (r.table != table)
+            continue;
+         boolean same = true;
+         for (int k = 0; k < key.length && same; ++k)
+            same = r.current(k).equals(key[k]);
+         if (same)
+            return r;
+      }//end for
+      Record r = new Record(table, key);
+      this.records.add(r);
+      return r;
+   }//end edit
+
+   /**
+    * @return the number of field changes not saved yet
+    */
+   public int pending(){
+      int n = 0;
+      for (Record r : this.records)
+         n += r.changes.size();
+      return n;
+   }//end pending
+
+   /**
+    * @return the number of records with changes not saved yet
+    */
+   public int changedRecords(){
+      int n = 0;
+      for (Record r : this.records)
+         if (!r.changes.isEmpty())
+            ++n;
+      return n;
+   }//end changedRecords
+
+   /**
+    * Writes every pending change in one transaction. The records can be
+    * edited further afterwards. If the transaction fails, the changes stay
+    * pending.
+    *
+    * @return the number of records updated; records whose key matched no
+    *         row are not counted
+    */
+   public int save(ProfNetwork esql) throws SQLException {
+      Map<String, List<Object[]>> batches = new LinkedHashMap<String, List<Object[]>>();
+      // the records behind each batch, in the same order
+      Map<String, List<Record>> batched = new LinkedHashMap<String, List<Record>>();
+      for (Record r : this.records){
+         if (r.changes.isEmpty())
+            continue;
+         StringBuilder sql = new StringBuilder("UPDATE " + r.table.name + " SET ");
+         List<Object> params = new ArrayList<Object>();
+         for (String column : r.table.columns){
+            if (!r.changes.containsKey(column))
+               continue;
+            sql.append(params.isEmpty() ? "" : ", ").append(column).append(" = ").append(placeholder(column));
+            params.add(r.changes.get(column));
+         }//end for
+         sql.append(" WHERE userId = ?");
+         params.add(this.userId);
+         for (int k = 0; k < r.table.key.length; ++k){
+            sql.append(" AND ").append(r.table.key[k]).append(" = ").append(placeholder(r.table.key[k]));
+            params.add(r.key[k]);
+         }//end for
+         List<Object[]> batch = batches.get(sql.toString());
+         if (batch == null){
+            batch = new ArrayList<Object[]>();
+            batches.put(sql.toString(), batch);
+            batched.put(sql.toString(), new ArrayList<Record>());
+         }//end if
+         batch.add(params.toArray());
+         batched.get(sql.toString()).add(r);
+      }//end for
+      this.notFound.clear();
+      if (batches.isEmpty())
+         return 0;
+      List<int[]> counts = new ArrayList<int[]>();
+      int updated = esql.executeBatches(batches, counts);
+      // the saved values become the records' keys for the next save; a record
+      // that matched nothing keeps its key, so it is not taken for another row
+      int b = 0;
+      for (List<Record> saved : batched.values()){
+         int[] count = counts.get(b++);
+         for (int i = 0; i < saved.size(); ++i){
+            Record r = saved.get(i);
+            if (count[i] == 0)
+               this.notFound.add(r);
+            else
+               for (int k = 0; k < r.key.length; ++k)
+                  r.key[k] = r.current(k);
+            r.changes.clear();
+         }//end for
+      }//end for
+      ProfileCache.invalidate(this.userId);
+      return updated;
+   }//end save
+
+   /**
+    * @return the records the last save found no row for; their changes
+    *         were dropped
+    */
+   public List<Record> notFound(){
+      return this.notFound;
+   }//end notFound
+
+   private static String placeholder(String column){
+      return column.endsWith("Date") ? "CAST(? AS date)" : "?";
+   }//end placeholder
+
+}//end ProfileEditSession
@@ -0,0 +1,208 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps statistics for every query template ProfNetwork runs:
+ * call count, errors, rows returned or updated and a latency histogram.
+ * The ProfNetwork execute methods record into it; a template is its SQL
+ * text with whitespace collapsed, the parameters being bound separately.
+ *
+ * It is configured with system properties:
+ *   profnetwork.slowQueryMillis  queries slower than this are logged (default off)
+ *   profnetwork.slowQueryLog     file slow queries are appended to (default profnetwork-slow.log)
+ *   profnetwork.metricsFile      file the statistics are dumped to periodically
+ *   profnetwork.metricsDumpSecs  seconds between dumps (default 60)
+ * The slow query log records templates only, never parameter values, since
+ * those include passwords.
+ */
+public class QueryStats {
+
+   private static final long SLOW_QUERY_NANOS = Long.getLong("profnetwork.slowQueryMillis", -1) * 1000000L;
+   private static final String SLOW_QUERY_LOG = System.getProperty("profnetwork.slowQueryLog", "profnetwork-slow.log");
+   private static final String METRICS_FILE = System.getProperty("profnetwork.metricsFile");
+   private static final long METRICS_DUMP_SECS = Long.getLong("profnetwork.metricsDumpSecs", 60);
+
+   /**
+    * Running totals of one template.
+    */
+   private static class Stats {
+      final String template;
+      final LatencyHistogram latency = new LatencyHistogram();
+      final AtomicLong rows = new AtomicLong();
+      final AtomicLong errors = new AtomicLong();
+      final AtomicLong totalNanos = new AtomicLong();
+
+      Stats (String template) {
+         this.template = template;
+      }
+   }//end Stats
+
+   /**
+    * Point in time copy of one template's statistics.
+    */
+   public static class Snapshot {
+      public final String template;
+      public final long calls;
+      public final long errors;
+      public final long rows;
+      public final double totalMillis;
+      public final double meanMillis;
+      public final double p50Millis;
+      public final double p99Millis;
+      public final double maxMillis;
+
+      Snapshot (Stats s) {
+         this.template = s.template;
+         this.calls = s.latency.count();
+         this.errors = s.errors.get();
+         this.rows = s.rows.get();
+         this.totalMillis = s.totalNanos.get() / 1e6;
+         this.meanMillis = s.latency.mean();
+         this.p50Millis = s.latency.percentile(0.5);
+         this.p99Millis = s.latency.percentile(0.99);
+         this.maxMillis = s.latency.max();
+      }
+   }//end Snapshot
+
+   // by the SQL text as passed in, and by normalized template
+   private static final ConcurrentHashMap<String, Stats> bySql = new ConcurrentHashMap<String, Stats>();
+   private static final ConcurrentHashMap<String, Stats> byTemplate = new ConcurrentHashMap<String, Stats>();
+
+   private static Timer dumper = null;
+
+   /**
+    * Records one execution of sql.
+    *
+    * @param sql the statement text, with ? placeholders
+    * @param nanos how long it ran
+    * @param rows rows returned or updated, 0 when it failed
+    * @param failed whether it threw
+    */
+   public static void record(String sql, long nanos, long rows, boolean failed){
+      Stats s = bySql.get(sql);
+      if (s == null)
+         s = lookup(sql);
+      s.latency.record(nanos);
+      s.totalNanos.addAndGet(nanos);
+      s.rows.addAndGet(rows);
+      if (failed)
+         s.errors.incrementAndGet();
+      if (SLOW_QUERY_NANOS >= 0 && nanos >= SLOW_QUERY_NANOS)
+         logSlow(s.template, nanos, rows, failed);
+   }//end record
+
+   private static Stats lookup(String sql){
+      String template = sql.trim().replaceAll("\\s+", " ");
+      Stats s = byTemplate.get(template);
+      if (s == null){
+         Stats fresh = new Stats(template);
+         s = byTemplate.putIfAbsent(template, fresh);
+         if (s == null){
+            s = fresh;
+            startDumper();
+         }//end if
+      }//end if
+      bySql.putIfAbsent(sql, s);
+      return s;
+   }//end lookup
+
+   /**
+    * @return the statistics of every template seen so far, most total time first
+    */
+   public static List<Snapshot> snapshot(){
+      List<Snapshot> all = new ArrayList<Snapshot>();
+      for (Stats s : byTemplate.values())
+         all.add(new Snapshot(s));
+      Collections.sort(all, new Comparator<Snapshot>() {
+         public int compare(Snapshot a, Snapshot b){
+            return Double.compare(b.totalMillis, a.totalMillis);
+         }
+      });
+      return all;
+   }//end snapshot
+
+   /**
+    * Forgets everything recorded so far.
+    */
+   public static void reset(){
+      bySql.clear();
+      byTemplate.clear();
+   }//end reset
+
+   /**
+    * Writes the current snapshot as a table.
+    */
+   public static void dump(PrintWriter out){
+      out.println("# " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+      out.println(String.format("%9s %7s %10s %11s %9s %9s %9s %9s  %s",
+                                "CALLS", "ERRORS", "ROWS", "TOTAL ms", "MEAN ms", "P50 ms", "P99 ms", "MAX ms", "TEMPLATE"));
+      for (Snapshot s : snapshot())
+         out.println(String.format("%9d %7d %10d %11.1f %9.3f %9.3f %9.3f %9.3f  %s",
+                                   s.calls, s.errors, s.rows, s.totalMillis, s.meanMillis,
+                                   s.p50Millis, s.p99Millis, s.maxMillis, s.template));
+      out.flush();
+   }//end dump
+
+   /*
+    * Starts the periodic dump to METRICS_FILE the first time anything is
+    * recorded, if a file is configured; a last dump is written at exit.
+    */
+   private static synchronized void startDumper(){
+      if (dumper != null || METRICS_FILE == null)
+         return;
+      dumper = new Timer("query-stats", true);
+      dumper.schedule(new TimerTask() {
+         public void run(){
+            dumpToFile();
+         }
+      }, METRICS_DUMP_SECS * 1000, METRICS_DUMP_SECS * 1000);
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+         public void run(){
+            dumpToFile();
+         }
+      });
+   }//end startDumper
+
+   private static void dumpToFile(){
+      try{
+         PrintWriter out = new PrintWriter(new FileWriter(METRICS_FILE));
+         try{
+            dump(out);
+         }finally{
+            out.close();
+         }//end try
+      }catch (IOException e){
+         // try again at the next dump.
+      }//end try
+   }//end dumpToFile
+
+   private static synchronized void logSlow(String template, long nanos, long rows, boolean failed){
+      String line = String.format("%s slow query %.3f ms, %d rows%s: %s",
+                                  new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()),
+                                  nanos / 1e6, rows, failed ? ", failed" : "", template);
+      try{
+         PrintWriter out = new PrintWriter(new FileWriter(SLOW_QUERY_LOG, true));
+         try{
+            out.println(line);
+         }finally{
+            out.close();
+         }//end try
+      }catch (IOException e){
+         // the log is best effort.
+      }//end try
+   }//end logSlow
+
+}//end QueryStats
@@ -0,0 +1,83 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps one token bucket per key (a user id, a client address)
+ * and is safe to use from any number of threads without locking.
+ *
+ * A bucket holds up to burst tokens and regains one every refillMillis. Each
+ * bucket is a single AtomicLong with the time at which it would be full
+ * again. Taking a token moves that time one interval later with a
+ * compare-and-set. The call fails when the new time is more than
+ * burst * interval past the current time, which means the bucket is empty.
+ * This is the GCRA form of a token bucket: it needs no refill timer and
+ * no lock.
+ *
+ * Full buckets carry no information, so once the map grows past MAX_KEYS
+ * they are dropped. That keeps memory bounded when a caller invents keys.
+ */
+public class RateLimiter {
+
+   // buckets kept before full ones are swept out
+   private static final int MAX_KEYS = 100000;
+
+   private final long intervalNanos;
+   private final long burstNanos;
+   private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<String, AtomicLong>();
+
+   /**
+    * @param burst the most tokens a bucket holds
+    * @param refillMillis how long a bucket takes to regain one token
+    */
+   public RateLimiter (int burst, long refillMillis) {
+      this.intervalNanos = refillMillis * 1000000L;
+      this.burstNanos = burst * this.intervalNanos;
+   }//end RateLimiter
+
+   /**
+    * Takes a token from key's bucket.
+    *
+    * @return false, taking nothing, when the bucket is empty
+    */
+   public boolean tryAcquire(String key){
+      AtomicLong full = this.buckets.get(key);
+      if (full == null){
+         if (this.buckets.size() >= MAX_KEYS)
+            sweep();
+         AtomicLong fresh = new AtomicLong(Long.MIN_VALUE);
+         full = this.buckets.putIfAbsent(key, fresh);
+         if (full == null)
+            full = fresh;
+      }//end if
+      while (true){
+         long now = System.nanoTime();
+         long current = full.get();
+         // a bucket that filled up in the past is just full now
+         long next = (current == Long.MIN_VALUE || current - now < 0 ? now : current) + this.intervalNanos;
+         if (next - now > this.burstNanos)
+            return false;
+         if (full.compareAndSet(current, next))
+            return true;
+      }//end while
+   }//end tryAcquire
+
+   /**
+    * Refills key's bucket, e.g. once its owner has proved who they are.
+    */
+   public void reset(String key){
+      this.buckets.remove(key);
+   }//end reset
+
+   private void sweep(){
+      long now = System.nanoTime();
+      for (Iterator<AtomicLong> it = this.buckets.values().iterator(); it.hasNext(); ){
+         long full = it.next().get();
+         if (full == Long.MIN_VALUE || full - now <= 0)
+            it.remove();
+      }//end for
+   }//end sweep
+
+}//end RateLimiter
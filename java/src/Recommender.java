@@ -0,0 +1,427 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class ranks "people you may know" suggestions. The candidates for a
+ * user are the people two hops away in the friend graph who are not already
+ * friends and have no pending request with them. Each candidate scores
+ *
+ *   MUTUAL_WEIGHT * mutual friends + COMPANY_WEIGHT * companies in common
+ *     + INSTITUTION_WEIGHT * institutions in common
+ *
+ * and a min-heap bounded at k keeps the best, so ranking c candidates costs
+ * O(c log k) and memory for k of them.
+ *
+ * refresh ranks every user over the in-memory SocialGraph. It splits the
+ * users into partitions of PARTITION_USERS, ranks each partition on a
+ * ForkJoinPool in tasks of BATCH_USERS users, and writes it to
+ * PEOPLE_YOU_MAY_KNOW under a new generation number. Readers always take a
+ * user's latest generation, and a user's rows are written in one
+ * transaction, so the menu keeps serving complete lists while a refresh
+ * runs. The older generations are deleted at the end. A user with nothing
+ * to suggest gets a single rank 0 row naming themselves, so suggest can
+ * tell "no suggestions" from "not ranked yet".
+ *
+ * Usage: java Recommender <dbname> <port> <user> [k=<n>] [threads=<n>]
+ */
+public class Recommender {
+
+   private static final int MUTUAL_WEIGHT = 4;
+   private static final int COMPANY_WEIGHT = 3;
+   private static final int INSTITUTION_WEIGHT = 2;
+
+   // suggestions kept per user when none is given
+   public static final int DEFAULT_K = 10;
+
+   // users ranked and written per transaction
+   private static final int PARTITION_USERS = 50000;
+
+   // users ranked per fork-join task
+   private static final int BATCH_USERS = 500;
+
+   // rows inserted per INSERT statement
+   private static final int ROWS_PER_INSERT = 64;
+
+   private static final int[] EMPTY = new int[0];
+
+   /**
+    * One suggested person and why.
+    */
+   public static class Suggestion {
+      public final String userId;
+      public final int mutualFriends;
+      public final int sharedCompanies;
+      public final int sharedInstitutions;
+      public final int score;
+      final int id;
+
+      Suggestion (String userId, int id, int mutualFriends, int sharedCompanies, int sharedInstitutions) {
+         this.userId = userId;
+         this.id = id;
+         this.mutualFriends = mutualFriends;
+         this.sharedCompanies = sharedCompanies;
+         this.sharedInstitutions = sharedInstitutions;
+         this.score = score(mutualFriends, sharedCompanies, sharedInstitutions);
+      }
+   }//end Suggestion
+
+   // lowest score first, so the heap's head is the suggestion to drop; ties go to the lower id
+   private static final Comparator<Suggestion> WORST_FIRST = new Comparator<Suggestion>() {
+      public int compare(Suggestion a, Suggestion b){
+         if (a.score != b.score)
+            return a.score < b.score ? -1 : 1;
+         return a.id > b.id ? -1 : a.id < b.id ? 1 : 0;
+      }
+   };
+
+   /*
+    * Companies and institutions of every user, as sorted ids of their
+    * lowercased names, indexed by SocialGraph number.
+    */
+   private static class Attributes {
+      int[][] companies;
+      int[][] institutions;
+   }//end Attributes
+
+   // loaded on the first on-the-fly suggestion, replaced by every refresh
+   private static Attributes cached = null;
+
+   // the generation cached was loaded under; a newer one in suggest drops it
+   private static int cachedGeneration = 0;
+
+   /*
+    * Per-thread counters: mutual[c] counts the mutual friends of candidate
+    * c, and touched lists the candidates with a count so they can be reset.
+    */
+   private static class Scratch {
+      final int[] mutual;
+      int[] touched = new int[256];
+
+      Scratch (int users) {
+         this.mutual = new int[users];
+      }
+   }//end Scratch
+
+   // each thread's Scratch, replaced only when the graph outgrows it
+   private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>();
+
+   private final ProfNetwork esql;
+   private final int k;
+
+   public Recommender (ProfNetwork esql, int k) {
+      this.esql = esql;
+      this.k = k;
+   }//end Recommender
+
+   static int score(int mutualFriends, int sharedCompanies, int sharedInstitutions){
+      return MUTUAL_WEIGHT * mutualFriends + COMPANY_WEIGHT * sharedCompanies + INSTITUTION_WEIGHT * sharedInstitutions;
+   }//end score
+
+   /**
+    * Returns user's suggestions as of the last refresh, leaving out anyone
+    * user has connected with since. Users the last refresh did not cover
+    * are ranked on the spot; a refresh that found nothing for user is
+    * answered from its rank 0 row without ranking again.
+    *
+    * @return at most k suggestions, best first
+    */
+   public List<Suggestion> suggest(String user) throws SQLException {
+      List<List<String>> rows = this.esql.executeQueryAndReturnResult(
+         "SELECT P.rank, P.suggestedId, P.mutualFriends, P.sharedCompanies, P.sharedInstitutions, P.generation " +
+         "FROM PEOPLE_YOU_MAY_KNOW P " +
+         "WHERE P.userId = ? AND P.generation = (SELECT max(generation) FROM PEOPLE_YOU_MAY_KNOW WHERE userId = ?) " +
+         "ORDER BY P.rank", user, user);
+      SocialGraph graph = SocialGraph.get(this.esql);
+      List<Suggestion> result = new ArrayList<Suggestion>();
+      if (rows.isEmpty()){
+         SocialGraph.Snapshot g = graph.snapshot();
+         int u = graph.indexOf(user);
+         if (u >= 0)
+            result.addAll(rank(g, attributes(this.esql, g), u, this.k, scratch(g.size())));
+         return result;
+      }//end if
+      seen(Integer.parseInt(rows.get(0).get(5).trim()));
+      for (List<String> row : rows){
+         String other = row.get(1).trim();
+         if (Integer.parseInt(row.get(0).trim()) > 0 && !graph.isLinked(user, other))
+            result.add(new Suggestion(other, -1, Integer.parseInt(row.get(2).trim()),
+                                      Integer.parseInt(row.get(3).trim()), Integer.parseInt(row.get(4).trim())));
+      }//end for
+      return result;
+   }//end suggest
+
+   /*
+    * Notes a generation read by suggest. When a refresh, possibly in another
+    * process, has written a newer one, the attributes cached here are older
+    * than it and are loaded again on the next on-the-fly suggestion.
+    */
+   private static synchronized void seen(int generation){
+      if (generation > cachedGeneration){
+         cached = null;
+         cachedGeneration = generation;
+      }//end if
+   }//end seen
+
+   /* the calling thread's Scratch, with room for users */
+   private static Scratch scratch(int users){
+      Scratch s = SCRATCH.get();
+      if (s == null || s.mutual.length < users){
+         s = new Scratch(users);
+         SCRATCH.set(s);
+      }//end if
+      return s;
+   }//end scratch
+
+   /*
+    * Ranks u's two-hop neighbourhood. s.mutual is all zero on entry and exit.
+    */
+   static List<Suggestion> rank(SocialGraph.Snapshot g, Attributes a, int u, int k, Scratch s){
+      int[] friends = g.friends[u];
+      int touched = 0;
+      for (int f : friends){
+         for (int c : g.friends[f]){
+            if (c == u || s.mutual[c]++ > 0)
+               continue;
+            if (touched == s.touched.length)
+               s.touched = Arrays.copyOf(s.touched, touched * 2);
+            s.touched[touched++] = c;
+         }//end for
+      }//end for
+      PriorityQueue<Suggestion> heap = new PriorityQueue<Suggestion>(k + 1, WORST_FIRST);
+      for (int i = 0; i < touched; ++i){
+         int c = s.touched[i];
+         int mutual = s.mutual[c];
+         s.mutual[c] = 0;
+         if (Arrays.binarySearch(friends, c) >= 0 || Arrays.binarySearch(g.pending[u], c) >= 0)
+            continue;
+         int companies = shared(of(a.companies, u), of(a.companies, c));
+         int institutions = shared(of(a.institutions, u), of(a.institutions, c));
+         if (heap.size() == k){
+            Suggestion worst = heap.peek();
+            int score = score(mutual, companies, institutions);
+            if (score < worst.score || (score == worst.score && c > worst.id))
+               continue;
+            heap.poll();
+         }//end if
+         heap.add(new Suggestion(g.names[c], c, mutual, companies, institutions));
+      }//end for
+      List<Suggestion> best = new ArrayList<Suggestion>(heap.size());
+      while (!heap.isEmpty())
+         best.add(heap.poll());
+      Collections.reverse(best);
+      return best;
+   }//end rank
+
+   /**
+    * Ranks every user and replaces the contents of PEOPLE_YOU_MAY_KNOW.
+    *
+    * @param threads the parallelism of the fork-join pool
+    * @return the number of suggestions written, not counting rank 0 rows
+    */
+   public long refresh(int threads) throws SQLException {
+      SocialGraph.invalidate();
+      final SocialGraph.Snapshot g = SocialGraph.get(this.esql).snapshot();
+      final Attributes a = loadAttributes(this.esql, SocialGraph.get(this.esql), g);
+      List<List<String>> last = this.esql.executeQueryAndReturnResult(
+         "SELECT coalesce(max(generation), 0) + 1 FROM PEOPLE_YOU_MAY_KNOW");
+      int generation = Integer.parseInt(last.get(0).get(0).trim());
+      synchronized (Recommender.class){
+         cached = a;
+         cachedGeneration = generation;
+      }//end synchronized
+
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      long written = 0;
+      try{
+         for (int from = 0; from < g.size(); from += PARTITION_USERS){
+            final int start = from;
+            final List<List<Suggestion>> ranked = new ArrayList<List<Suggestion>>(
+               Collections.<List<Suggestion>>nCopies(Math.min(PARTITION_USERS, g.size() - from), null));
+            pool.invoke(new RecursiveAction() {
+               protected void compute(){
+                  rankRange(start, start + ranked.size());
+               }
+
+               void rankRange(final int lo, final int hi){
+                  if (hi - lo <= BATCH_USERS){
+                     for (int u = lo; u < hi; ++u)
+                        ranked.set(u - start, rank(g, a, u, Recommender.this.k, scratch(g.size())));
+                     return;
+                  }//end if
+                  final int mid = (lo + hi) >>> 1;
+                  invokeAll(new RecursiveAction() {
+                     protected void compute(){
+                        rankRange(lo, mid);
+                     }
+                  }, new RecursiveAction() {
+                     protected void compute(){
+                        rankRange(mid, hi);
+                     }
+                  });
+               }
+            });
+            written += write(g, start, ranked, generation);
+         }//end for
+      }finally{
+         pool.shutdown();
+      }//end try
+      this.esql.executeUpdate("DELETE FROM PEOPLE_YOU_MAY_KNOW WHERE generation < ?", generation);
+      return written;
+   }//end refresh
+
+   /*
+    * Writes one partition's suggestions in a single transaction, as
+    * ROWS_PER_INSERT row INSERTs batched together plus single row INSERTs
+    * for the remainder. A user without suggestions gets the rank 0 row.
+    */
+   private long write(SocialGraph.Snapshot g, int start, List<List<Suggestion>> ranked, int generation) throws SQLException {
+      List<Object> values = new ArrayList<Object>();
+      int markers = 0;
+      for (int i = 0; i < ranked.size(); ++i){
+         List<Suggestion> best = ranked.get(i);
+         if (best.isEmpty()){
+            values.addAll(Arrays.<Object>asList(g.names[start + i], generation, 0, g.names[start + i], 0, 0, 0, 0));
+            ++markers;
+         }//end if
+         for (int r = 0; r < best.size(); ++r){
+            Suggestion s = best.get(r);
+            values.addAll(Arrays.<Object>asList(g.names[start + i], generation, r + 1, s.userId,
+                                                s.mutualFriends, s.sharedCompanies, s.sharedInstitutions, s.score));
+         }//end for
+      }//end for
+      int rows = values.size() / 8;
+      if (rows == 0)
+         return 0;
+      Map<String, List<Object[]>> batches = new LinkedHashMap<String, List<Object[]>>();
+      int full = rows / ROWS_PER_INSERT * ROWS_PER_INSERT;
+      if (full > 0)
+         batches.put(insert(ROWS_PER_INSERT), chunks(values, 0, full, ROWS_PER_INSERT * 8));
+      if (full < rows)
+         batches.put(insert(1), chunks(values, full, rows, 8));
+      this.esql.executeBatches(batches);
+      return rows - markers;
+   }//end write
+
+   private static String insert(int rows){
+      StringBuilder sql = new StringBuilder("INSERT INTO PEOPLE_YOU_MAY_KNOW (userId, generation, rank, suggestedId, " +
+                                            "mutualFriends, sharedCompanies, sharedInstitutions, score) VALUES ");
+      for (int i = 0; i < rows; ++i)
+         sql.append(i > 0 ? ", " : "").append("(?, ?, ?, ?, ?, ?, ?, ?)");
+      return sql.toString();
+   }//end insert
+
+   /* the values of rows from to to, size parameters per array */
+   private static List<Object[]> chunks(List<Object> values, int from, int to, int size){
+      List<Object[]> out = new ArrayList<Object[]>();
+      for (int i = from * 8; i < to * 8; i += size)
+         out.add(values.subList(i, i + size).toArray());
+      return out;
+   }//end chunks
+
+   private static synchronized Attributes attributes(ProfNetwork esql, SocialGraph.Snapshot g) throws SQLException {
+      if (cached == null)
+         cached = loadAttributes(esql, SocialGraph.get(esql), g);
+      return cached;
+   }//end attributes
+
+   private static Attributes loadAttributes(ProfNetwork esql, SocialGraph graph, SocialGraph.Snapshot g) throws SQLException {
+      Attributes a = new Attributes();
+      a.companies = loadNames(esql, graph, g, "SELECT W.userId, W.company FROM WORK_EXPR W");
+      a.institutions = loadNames(esql, graph, g, "SELECT E.userId, E.instituitionName FROM EDUCATIONAL_DETAILS E");
+      return a;
+   }//end loadAttributes
+
+   /*
+    * Streams (userId, name) pairs into sorted name id arrays per user. Users
+    * outside the graph cannot be suggested and are skipped.
+    */
+   private static int[][] loadNames(ProfNetwork esql, final SocialGraph graph, SocialGraph.Snapshot g, String query) throws SQLException {
+      final int[][] names = new int[g.size()][];
+      final Map<String, Integer> ids = new HashMap<String, Integer>();
+      esql.executeQueryAndStream(query, new ProfNetwork.RowHandler() {
+         public void handle(ResultSet rs) throws SQLException {
+            int u = graph.indexOf(rs.getString(1));
+            if (u < 0 || u >= names.length || rs.getString(2) == null)
+               return;
+            String name = rs.getString(2).trim().toLowerCase();
+            Integer id = ids.get(name);
+            if (id == null){
+               id = ids.size();
+               ids.put(name, id);
+            }//end if
+            names[u] = add(names[u] == null ? EMPTY : names[u], id);
+         }
+      });
+      return names;
+   }//end loadNames
+
+   private static int[] of(int[][] lists, int u){
+      return u < lists.length && lists[u] != null ? lists[u] : EMPTY;
+   }//end of
+
+   private static int[] add(int[] list, int v){
+      int pos = Arrays.binarySearch(list, v);
+      if (pos >= 0)
+         return list;
+      pos = -pos - 1;
+      int[] out = new int[list.length + 1];
+      System.arraycopy(list, 0, out, 0, pos);
+      out[pos] = v;
+      System.arraycopy(list, pos, out, pos + 1, list.length - pos);
+      return out;
+   }//end add
+
+   /* size of the intersection of two sorted lists */
+   private static int shared(int[] a, int[] b){
+      int n = 0;
+      for (int i = 0, j = 0; i < a.length && j < b.length; ){
+         if (a[i] < b[j]) ++i;
+         else if (a[i] > b[j]) ++j;
+         else { ++n; ++i; ++j; }
+      }//end for
+      return n;
+   }//end shared
+
+   public static void main (String[] args) {
+      if (args.length < 3) {
+         System.err.println ("Usage: java [-classpath <classpath>] " + Recommender.class.getName () +
+                             " <dbname> <port> <user> [k=<suggestions per user>] [threads=<n>]");
+         return;
+      }//end if
+      int k = DEFAULT_K, threads = Runtime.getRuntime().availableProcessors();
+      ProfNetwork esql = null;
+      try{
+         for (int i = 3; i < args.length; ++i){
+            String name = args[i].substring(0, Math.max(0, args[i].indexOf('=')));
+            String value = args[i].substring(args[i].indexOf('=') + 1);
+            if (name.equals("k")) k = Integer.parseInt(value);
+            else if (name.equals("threads")) threads = Integer.parseInt(value);
+            else throw new IllegalArgumentException("unknown argument " + args[i]);
+         }//end for
+         Class.forName ("org.postgresql.Driver");
+         esql = new ProfNetwork (args[0], args[1], args[2], "");
+         long start = System.nanoTime();
+         long written = new Recommender(esql, k).refresh(threads);
+         System.out.println(String.format("Wrote %d suggestions in %.1f s", written, (System.nanoTime() - start) / 1e9));
+      }catch (Exception e){
+         System.err.println (e.getMessage ());
+      }finally{
+         if (esql != null)
+            esql.cleanup ();
+      }//end try
+   }//end main
+
+}//end Recommender
@@ -0,0 +1,239 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This class spends the new-user request quota (USR.fCon): requests to
+ * anyone beyond 3rd degree cost one unit.
+ *
+ * Normally the request goes out as a single statement. Its first part locks
+ * the sender's USR row if a unit is left. Its second part inserts the
+ * request, if the target exists and there is no request or friendship
+ * between the two users yet. Its last part takes the unit only for a row
+ * the insert actually wrote, so a request that loses a race on the pair
+ * costs nothing. Concurrent sessions of one user queue on that user's USR
+ * row, so they cannot overspend. The insert goes through
+ * ConnectionRequests' pair index, so it reopens a rejected pair like any
+ * other request.
+ *
+ * Hot users are those who send HOT_SENDS requests within one reconcile
+ * period. For them the service leases up to LEASE_SIZE units out of fCon in
+ * one statement. It keeps the lease in memory, split over STRIPES atomic
+ * counters so concurrent sessions do not all CAS on one value. Each
+ * request from a hot user then costs only the insert. Every RECONCILE_SECS
+ * (profnetwork.quotaReconcileSecs, default 30), and at stop, the unused
+ * units of every lease go back to USR in one batched transaction. Leases
+ * are only handed out between start and stop, so a process without the
+ * reconcile (or with it turned off by a period of 0) always pays directly.
+ * A crash loses the leased units, so the user can only end up with less
+ * quota, never more.
+ */
+public class RequestQuota {
+
+   private static final int HOT_SENDS = 3;
+   private static final int LEASE_SIZE = 16;
+   private static final int STRIPES = 4;
+   private static final long RECONCILE_SECS = Long.getLong("profnetwork.quotaReconcileSecs", 30);
+
+   // (from, to) has no request or friendship yet, either way
+   private static final String NOT_LINKED =
+      "NOT EXISTS (SELECT 1 FROM CONNECTION_USR C WHERE " + ConnectionRequests.IS_PAIR +
+      " AND C.status IN ('Accept','Request'))";
+
+   /*
+    * Units leased from one user's fCon. exhausted marks a user found to have
+    * none left, so their attempts are refused without a round trip until the
+    * next reconcile. closed is set by reconcile before it drains the lease.
+    */
+   static class Lease {
+      final AtomicIntegerArray stripes = new AtomicIntegerArray(STRIPES);
+      final boolean exhausted;
+      volatile boolean closed = false;
+
+      Lease (int units) {
+         for (int i = 0; i < STRIPES; ++i)
+            this.stripes.set(i, units / STRIPES + (i < units % STRIPES ? 1 : 0));
+         this.exhausted = units == 0;
+      }
+
+      boolean take(){
+         int start = (int) (Thread.currentThread().getId() % STRIPES);
+         for (int i = 0; i < STRIPES; ++i){
+            int s = (start + i) % STRIPES;
+            for (int v = this.stripes.get(s); v > 0; v = this.stripes.get(s))
+               if (this.stripes.compareAndSet(s, v, v - 1))
+                  return true;
+         }//end for
+         return false;
+      }//end take
+
+      /*
+       * Returns a unit taken for a request that was not sent. A lease that
+       * reconcile closed meanwhile may already be drained; the unit then
+       * goes back to USR directly, unless the drain still picked it up.
+       */
+      void giveBack(ProfNetwork esql, String user) throws SQLException {
+         this.stripes.incrementAndGet((int) (Thread.currentThread().getId() % STRIPES));
+         if (this.closed && take())
+            esql.executeUpdate("UPDATE USR SET fCon = fCon + 1 WHERE userId = ?", user);
+      }//end giveBack
+
+      int drain(){
+         int units = 0;
+         for (int i = 0; i < STRIPES; ++i)
+            units += this.stripes.getAndSet(i, 0);
+         return units;
+      }//end drain
+   }//end Lease
+
+   private static final ConcurrentHashMap<String, Lease> leases = new ConcurrentHashMap<String, Lease>();
+   private static final ConcurrentHashMap<String, AtomicInteger> sends = new ConcurrentHashMap<String, AtomicInteger>();
+
+   private static Timer timer = null;
+   private static ProfNetwork db = null;
+
+   // set while the reconcile runs; hot users only get leases then
+   private static volatile boolean leasing = false;
+
+   /**
+    * Starts the periodic reconcile on esql's connections, once per process.
+    */
+   public static synchronized void start(ProfNetwork esql){
+      if (timer != null || RECONCILE_SECS <= 0)
+         return;
+      db = esql;
+      timer = new Timer("request-quota", true);
+      timer.schedule(new TimerTask() {
+         public void run(){
+            try{
+               reconcile(db);
+            }catch (Exception e){
+               // the leases stay and are returned next period.
+            }//end try
+         }
+      }, RECONCILE_SECS * 1000, RECONCILE_SECS * 1000);
+      leasing = true;
+   }//end start
+
+   /**
+    * Stops the reconcile and returns every leased unit.
+    */
+   public static synchronized void stop(){
+      if (timer == null)
+         return;
+      leasing = false;
+      timer.cancel();
+      timer = null;
+      try{
+         reconcile(db);
+      }catch (Exception e){
+         System.err.println (e.getMessage ());
+      }//end try
+   }//end stop
+
+   /**
+    * Sends a request from from to to, paid with one unit of from's quota.
+    *
+    * @return false, sending nothing, when from has no quota left, to does
+    *         not exist or the two are already linked
+    */
+   public static boolean trySend(ProfNetwork esql, String from, String to) throws SQLException {
+      Lease lease = leases.get(from);
+      if (lease == null && leasing && isHot(from))
+         lease = lease(esql, from);
+      if (lease != null){
+         if (lease.exhausted)
+            return false;
+         if (lease.take()){
+            boolean sent = esql.executeUpdate(
+               "INSERT INTO CONNECTION_USR AS C (userId, connectionId, status) " +
+               "SELECT ?, T.userId, 'Request' FROM USR T WHERE T.userId = ? AND " + NOT_LINKED +
+               ConnectionRequests.REOPEN_REJECTED,
+               from, to, from, to, from, to) == 1;
+            if (!sent)
+               lease.giveBack(esql, from);
+            return sent;
+         }//end if
+      }//end if
+      return esql.executeUpdate(
+         "WITH payer AS (SELECT userId FROM USR WHERE userId = ? AND fCon > 0 FOR UPDATE), " +
+         "sent AS (INSERT INTO CONNECTION_USR AS C (userId, connectionId, status) " +
+         "SELECT P.userId, T.userId, 'Request' FROM payer P, USR T WHERE T.userId = ? AND " + NOT_LINKED +
+         ConnectionRequests.REOPEN_REJECTED + " RETURNING C.userId) " +
+         "UPDATE USR SET fCon = fCon - 1 WHERE userId IN (SELECT userId FROM sent)",
+         from, to, from, to, from, to) == 1;
+   }//end trySend
+
+   private static boolean isHot(String user){
+      AtomicInteger n = sends.get(user);
+      if (n == null){
+         AtomicInteger fresh = new AtomicInteger();
+         n = sends.putIfAbsent(user, fresh);
+         if (n == null)
+            n = fresh;
+      }//end if
+      return n.incrementAndGet() >= HOT_SENDS;
+   }//end isHot
+
+   /*
+    * Moves up to LEASE_SIZE units from user's fCon into a new lease.
+    */
+   private static Lease lease(ProfNetwork esql, String user) throws SQLException {
+      List<List<String>> leased = esql.executeQueryAndReturnResult(
+         "UPDATE USR U SET fCon = U.fCon - L.n " +
+         "FROM (SELECT userId, least(fCon, ?) AS n FROM USR WHERE userId = ? AND fCon > 0 FOR UPDATE) L " +
+         "WHERE U.userId = L.userId RETURNING L.n", LEASE_SIZE, user);
+      Lease lease = new Lease(leased.isEmpty() ? 0 : Integer.parseInt(leased.get(0).get(0).trim()));
+      Lease raced = leases.putIfAbsent(user, lease);
+      if (raced != null){
+         // another session leased first; return these units
+         int units = lease.drain();
+         if (units > 0)
+            esql.executeUpdate("UPDATE USR SET fCon = fCon + ? WHERE userId = ?", units, user);
+         return raced;
+      }//end if
+      return lease;
+   }//end lease
+
+   /**
+    * Returns the unused units of every lease to USR in one transaction and
+    * forgets which users were hot.
+    */
+   public static void reconcile(ProfNetwork esql) throws SQLException {
+      sends.clear();
+      List<Object[]> returns = new ArrayList<Object[]>();
+      for (Map.Entry<String, Lease> e : leases.entrySet()){
+         e.getValue().closed = true;
+         leases.remove(e.getKey(), e.getValue());
+         int units = e.getValue().drain();
+         if (units > 0)
+            returns.add(new Object[] { units, e.getKey() });
+      }//end for
+      if (returns.isEmpty())
+         return;
+      Map<String, List<Object[]>> batches = new LinkedHashMap<String, List<Object[]>>();
+      batches.put("UPDATE USR SET fCon = fCon + ? WHERE userId = ?", returns);
+      try{
+         esql.executeBatches(batches);
+      }catch (SQLException e){
+         // keep the units leased so the next reconcile returns them
+         for (Object[] r : returns){
+            Lease back = new Lease((Integer) r[0]);
+            Lease current = leases.putIfAbsent((String) r[1], back);
+            if (current != null)
+               current.stripes.addAndGet(0, (Integer) r[0]);
+         }//end for
+         throw e;
+      }//end try
+   }//end reconcile
+
+}//end RequestQuota
@@ -0,0 +1,226 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * This class serves the ProfNetwork menus to many users at once. Every
+ * client that connects to the listen port gets its own session running the
+ * same menu loop as the console version, backed by a shared ConnectionPool.
+ *
+ * The menu code reads ProfNetwork.in and writes System.out/System.err, so
+ * the server swaps those for streams that forward to the calling session's
+ * socket. Sessions run on virtual threads when the JVM has them and on small
+ * stack platform threads otherwise; an idle session holds no connection.
+ * Other drivers of the menus (see WorkloadDriver) install the same routing
+ * and attach their own streams to each thread.
+ */
+public class SessionServer {
+
+   // connections idle this long are closed by the pool
+   private static final long IDLE_TIMEOUT_MILLIS = 60000;
+
+   // stack size for platform session threads, the menus don't recurse deeply
+   private static final long SESSION_STACK_SIZE = 256 * 1024;
+
+   private static final ThreadLocal<BufferedReader> sessionIn = new ThreadLocal<BufferedReader>();
+   private static final ThreadLocal<PrintStream> sessionOut = new ThreadLocal<PrintStream>();
+   private static final ThreadLocal<PrintStream> sessionErr = new ThreadLocal<PrintStream>();
+   private static final ThreadLocal<String> sessionSource = new ThreadLocal<String>();
+   private static boolean installed = false;
+
+   /**
+    * Thrown from a session's input once its client has gone away. It is an
+    * Error so the menus' catch(Exception) blocks let it unwind the session.
+    */
+   static class SessionClosed extends Error {
+      private static final long serialVersionUID = 1L;
+
+      SessionClosed() {
+         super("session closed");
+      }
+   }//end SessionClosed
+
+   /**
+    * Reader handed to ProfNetwork.in: reads from the current session's socket.
+    */
+   private static class SessionReader extends BufferedReader {
+      private final BufferedReader fallback;
+
+      SessionReader (BufferedReader fallback) {
+         super(new StringReader(""));
+         this.fallback = fallback;
+      }
+
+      public String readLine() throws IOException {
+         BufferedReader r = sessionIn.get();
+         if (r == null)
+            return this.fallback.readLine();
+         String line;
+         try{
+            line = r.readLine();
+         }catch (IOException e){
+            // a reset or broken connection ends the session like EOF does
+            throw new SessionClosed();
+         }//end try
+         if (line == null)
+            throw new SessionClosed();
+         return line;
+      }
+   }//end SessionReader
+
+   /**
+    * Stream installed as System.out/System.err: writes to the current
+    * session's stream, or to the original stream outside a session.
+    */
+   private static class SessionOutput extends OutputStream {
+      private final ThreadLocal<PrintStream> session;
+      private final PrintStream fallback;
+
+      SessionOutput (ThreadLocal<PrintStream> session, PrintStream fallback) {
+         this.session = session;
+         this.fallback = fallback;
+      }
+
+      private PrintStream target(){
+         PrintStream out = this.session.get();
+         if (out == null)
+            out = sessionOut.get();
+         return out == null ? this.fallback : out;
+      }
+
+      public void write(int b){
+         target().write(b);
+      }
+
+      public void write(byte[] b, int off, int len){
+         target().write(b, off, len);
+      }
+
+      public void flush(){
+         target().flush();
+      }
+   }//end SessionOutput
+
+   /**
+    * Routes ProfNetwork.in, System.out and System.err through the streams
+    * attached to the calling thread, once per process.
+    */
+   public static synchronized void install(){
+      if (installed)
+         return;
+      ProfNetwork.in = new SessionReader(ProfNetwork.in);
+      System.setOut(new PrintStream(new SessionOutput(sessionOut, System.out), true));
+      System.setErr(new PrintStream(new SessionOutput(sessionErr, System.err), true));
+      installed = true;
+   }//end install
+
+   /**
+    * Makes the menus on the calling thread read from in and write to out and
+    * err (err may be null to share out), until detach.
+    */
+   public static void attach(BufferedReader in, PrintStream out, PrintStream err){
+      sessionIn.set(in);
+      sessionOut.set(out);
+      sessionErr.set(err);
+   }//end attach
+
+   public static void detach(){
+      sessionIn.remove();
+      sessionOut.remove();
+      sessionErr.remove();
+      sessionSource.remove();
+   }//end detach
+
+   /**
+    * @return the address of the client served on the calling thread, null
+    *         for a console or other local session
+    */
+   public static String source(){
+      return sessionSource.get();
+   }//end source
+
+   /**
+    * Accepts clients on listenPort until the process is stopped.
+    *
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @param listenPort the TCP port sessions connect to
+    * @param poolSize the most database connections shared by all sessions
+    */
+   public static void serve(String url, String user, String passwd, int listenPort, int poolSize) throws IOException {
+      ConnectionPool pool = new ConnectionPool(url, user, passwd, poolSize, IDLE_TIMEOUT_MILLIS);
+      MessagePurger.start(new ProfNetwork(pool));
+      RequestQuota.start(new ProfNetwork(pool));
+      install();
+
+      ServerSocket server = new ServerSocket(listenPort);
+      System.out.println("Serving sessions on port " + listenPort + " (pool of " + poolSize + " connections)");
+      try{
+         while (true){
+            Socket client = server.accept();
+            startSession(new Session(pool, client));
+         }//end while
+      }finally{
+         server.close();
+         pool.close();
+      }//end try
+   }//end serve
+
+   /*
+    * Runs one client's menus from login to disconnect.
+    */
+   private static class Session implements Runnable {
+      private final ConnectionPool pool;
+      private final Socket client;
+
+      Session (ConnectionPool pool, Socket client) {
+         this.pool = pool;
+         this.client = client;
+      }
+
+      public void run(){
+         try{
+            attach(new BufferedReader(new InputStreamReader(this.client.getInputStream())),
+                   new PrintStream(this.client.getOutputStream(), true), null);
+            sessionSource.set(this.client.getInetAddress().getHostAddress());
+            ProfNetwork.Greeting();
+            ProfNetwork.runMenu(new ProfNetwork(this.pool));
+         }catch (SessionClosed e){
+            // client disconnected.
+         }catch (IOException e){
+            // client disconnected.
+         }finally{
+            detach();
+            try{
+               this.client.close();
+            }catch (IOException e){
+               // ignored.
+            }//end try
+         }//end try
+      }
+   }//end Session
+
+   private static void startSession(Runnable session){
+      // Thread.startVirtualThread is only there on newer JVMs
+      try{
+         Method virtual = Thread.class.getMethod("startVirtualThread", Runnable.class);
+         virtual.invoke(null, session);
+         return;
+      }catch (Exception e){
+         // fall back to a platform thread.
+      }//end try
+      Thread t = new Thread(null, session, "session", SESSION_STACK_SIZE);
+      t.setDaemon(true);
+      t.start();
+   }//end startSession
+
+}//end SessionServer
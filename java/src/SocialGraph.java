@@ -0,0 +1,383 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.ArrayList;
+
+/**
+ * This class keeps a process-wide, in-memory copy of CONNECTION_USR so that
+ * friend checks do not cost a round trip. User ids are interned to ints and
+ * every user's neighbours are kept as a sorted int array, one for accepted
+ * connections and one for pending requests (either direction).
+ *
+ * The table is read once on first use; afterwards ProfNetwork reports every
+ * write it makes to CONNECTION_USR through addRequest, accept and reject.
+ *
+ * Queries work on the sorted arrays directly: areFriends is a binary search,
+ * mutualFriends a galloping intersection and degreeOfSeparation a
+ * bidirectional breadth-first search, none of them building a friend list.
+ */
+public class SocialGraph {
+
+   private static final int[] EMPTY = new int[0];
+
+   /**
+    * A copy of the graph for bulk readers such as Recommender. Users are
+    * numbered 0 to size() - 1 as they were interned and keep their number for
+    * the life of the graph. The neighbour arrays are shared with the graph,
+    * which only ever replaces them, so they can be read without locking.
+    */
+   public static class Snapshot {
+      final String[] names;
+      final int[][] friends;
+      final int[][] pending;
+
+      Snapshot (String[] names, int[][] friends, int[][] pending) {
+         this.names = names;
+         this.friends = friends;
+         this.pending = pending;
+      }
+
+      public int size(){
+         return this.names.length;
+      }//end size
+   }//end Snapshot
+
+   // the single shared instance, loaded lazily
+   private static SocialGraph graph = null;
+
+   private final Map<String, Integer> ids = new HashMap<String, Integer>();
+   private final List<String> names = new ArrayList<String>();
+
+   // friends[u] and pending[u] are sorted, duplicate free neighbour ids of u
+   private int[][] friends = new int[16][];
+   private int[][] pending = new int[16][];
+
+   /**
+    * Returns the shared graph, loading it from the database the first time.
+    *
+    * @param esql the database the graph is loaded from
+    * @return the shared graph
+    * @throws java.sql.SQLException when the initial load failed
+    */
+   public static synchronized SocialGraph get(ProfNetwork esql) throws SQLException {
+      if (graph == null){
+         SocialGraph g = new SocialGraph();
+         g.load(esql);
+         graph = g;
+      }//end if
+      return graph;
+   }//end get
+
+   /**
+    * Drops the shared graph so the next call to get reloads it.
+    */
+   public static synchronized void invalidate(){
+      graph = null;
+   }//end invalidate
+
+   private void load(ProfNetwork esql) throws SQLException {
+      // edges are streamed straight into int arrays, grown by doubling
+      final int[][] edges = { new int[1024], new int[1024] };
+      final boolean[][] accepted = { new boolean[1024] };
+      final int m = esql.executeQueryAndStream(
+         "SELECT C.userId, rtrim(C.connectionId), rtrim(C.status) FROM CONNECTION_USR C WHERE C.status IN ('Accept','Request')",
+         new ProfNetwork.RowHandler() {
+            private int i = 0;
+
+            public void handle(ResultSet rs) throws SQLException {
+               if (i == edges[0].length){
+                  edges[0] = Arrays.copyOf(edges[0], i * 2);
+                  edges[1] = Arrays.copyOf(edges[1], i * 2);
+                  accepted[0] = Arrays.copyOf(accepted[0], i * 2);
+               }//end if
+               edges[0][i] = intern(rs.getString(1));
+               edges[1][i] = intern(rs.getString(2));
+               accepted[0][i] = rs.getString(3).equals("Accept");
+               ++i;
+            }
+         });
+      build(edges[0], edges[1], accepted[0], m);
+   }//end load
+
+   /*
+    * Fills the neighbour arrays from the first m edges (a[i], b[i]).
+    */
+   private void build(int[] a, int[] b, boolean[] accepted, int m){
+      // count degrees first so each neighbour array is allocated once
+      int n = names.size();
+      int[] fDeg = new int[n];
+      int[] pDeg = new int[n];
+      for (int i = 0; i < m; ++i){
+         int[] deg = accepted[i] ? fDeg : pDeg;
+         deg[a[i]]++;
+         deg[b[i]]++;
+      }//end for
+      for (int u = 0; u < n; ++u){
+         friends[u] = new int[fDeg[u]];
+         pending[u] = new int[pDeg[u]];
+      }//end for
+      Arrays.fill(fDeg, 0);
+      Arrays.fill(pDeg, 0);
+      for (int i = 0; i < m; ++i){
+         int[][] adj = accepted[i] ? friends : pending;
+         int[] deg = accepted[i] ? fDeg : pDeg;
+         adj[a[i]][deg[a[i]]++] = b[i];
+         adj[b[i]][deg[b[i]]++] = a[i];
+      }//end for
+      for (int u = 0; u < n; ++u){
+         friends[u] = sortedUnique(friends[u]);
+         pending[u] = sortedUnique(pending[u]);
+      }//end for
+   }//end build
+
+   /**
+    * @return true when a and b have an accepted connection
+    */
+   public synchronized boolean areFriends(String a, String b){
+      return contains(friends, id(a), id(b));
+   }//end areFriends
+
+   /**
+    * @return the number of accepted connections of user
+    */
+   public synchronized int friendCount(String user){
+      int u = id(user);
+      return u < 0 ? 0 : friends[u].length;
+   }//end friendCount
+
+   /**
+    * @return the friends a and b have in common, in no particular order
+    */
+   public synchronized List<String> mutualFriends(String a, String b){
+      int u = id(a), v = id(b);
+      List<String> result = new ArrayList<String>();
+      if (u < 0 || v < 0)
+         return result;
+      for (int w : intersect(friends[u], friends[v]))
+         result.add(names.get(w));
+      return result;
+   }//end mutualFriends
+
+   /**
+    * Finds the fewest accepted connections leading from a to b, searching
+    * from both ends at once and always widening the smaller frontier, so a
+    * search that meets in the middle visits far fewer users than one that
+    * walks out from a alone.
+    *
+    * @return the number of hops between a and b, 0 when they are the same
+    *         user, -1 when they are more than maxHops apart
+    */
+   public synchronized int degreeOfSeparation(String a, String b, int maxHops){
+      int u = id(a), v = id(b);
+      if (u < 0 || v < 0)
+         return -1;
+      if (u == v)
+         return 0;
+      Set<Integer> seenA = new HashSet<Integer>(), seenB = new HashSet<Integer>();
+      List<Integer> frontierA = new ArrayList<Integer>(), frontierB = new ArrayList<Integer>();
+      seenA.add(u);
+      frontierA.add(u);
+      seenB.add(v);
+      frontierB.add(v);
+      for (int hops = 1; hops <= maxHops; ++hops){
+         boolean fromA = frontierA.size() <= frontierB.size();
+         Set<Integer> seen = fromA ? seenA : seenB, other = fromA ? seenB : seenA;
+         List<Integer> next = new ArrayList<Integer>();
+         for (int x : fromA ? frontierA : frontierB){
+            for (int y : friends[x]){
+               if (other.contains(y))
+                  return hops;
+               if (seen.add(y))
+                  next.add(y);
+            }//end for
+         }//end for
+         if (next.isEmpty())
+            return -1;
+         if (fromA)
+            frontierA = next;
+         else
+            frontierB = next;
+      }//end for
+      return -1;
+   }//end degreeOfSeparation
+
+   /**
+    * @return true when a and b are friends or either one has a pending
+    *         request to the other
+    */
+   public synchronized boolean isLinked(String a, String b){
+      int u = id(a), v = id(b);
+      return contains(friends, u, v) || contains(pending, u, v);
+   }//end isLinked
+
+   /**
+    * @return the accepted connections of user, in no particular order
+    */
+   public synchronized List<String> friendsOf(String user){
+      int u = id(user);
+      List<String> result = new ArrayList<String>();
+      if (u < 0)
+         return result;
+      for (int v : friends[u])
+         result.add(names.get(v));
+      return result;
+   }//end friendsOf
+
+   /**
+    * Records a new pending request between from and to.
+    */
+   public synchronized void addRequest(String from, String to){
+      // intern first: it may replace pending with a larger array
+      int u = intern(from), v = intern(to);
+      link(pending, u, v);
+   }//end addRequest
+
+   /**
+    * Records that the request between from and to was accepted.
+    */
+   public synchronized void accept(String from, String to){
+      int u = intern(from), v = intern(to);
+      unlink(pending, u, v);
+      link(friends, u, v);
+   }//end accept
+
+   /**
+    * Records that the request between from and to was rejected.
+    */
+   public synchronized void reject(String from, String to){
+      int u = id(from), v = id(to);
+      if (u >= 0 && v >= 0)
+         unlink(pending, u, v);
+   }//end reject
+
+   /**
+    * @return the current state of the graph, see Snapshot
+    */
+   public synchronized Snapshot snapshot(){
+      int n = names.size();
+      return new Snapshot(names.toArray(new String[n]), Arrays.copyOf(friends, n), Arrays.copyOf(pending, n));
+   }//end snapshot
+
+   /**
+    * @return the number user has in snapshots, -1 when user has never had a connection
+    */
+   public synchronized int indexOf(String user){
+      return id(user);
+   }//end indexOf
+
+   private int id(String user){
+      if (user == null)
+         return -1;
+      Integer u = ids.get(user.trim());
+      return u == null ? -1 : u.intValue();
+   }//end id
+
+   private int intern(String user){
+      String key = user.trim();
+      Integer u = ids.get(key);
+      if (u != null)
+         return u.intValue();
+      int next = names.size();
+      ids.put(key, next);
+      names.add(key);
+      if (next == friends.length){
+         friends = Arrays.copyOf(friends, next * 2);
+         pending = Arrays.copyOf(pending, next * 2);
+      }//end if
+      friends[next] = EMPTY;
+      pending[next] = EMPTY;
+      return next;
+   }//end intern
+
+   private static boolean contains(int[][] adj, int u, int v){
+      if (u < 0 || v < 0)
+         return false;
+      return Arrays.binarySearch(adj[u], v) >= 0;
+   }//end contains
+
+   /*
+    * Intersects two sorted lists. Each element of the shorter list is looked
+    * up in the longer one by galloping from where the previous lookup ended:
+    * probing 1, 2, 4, ... places ahead, then binary searching the last step.
+    * For m <= n elements that costs O(m log(n/m)), which is linear for lists
+    * of similar size and logarithmic per element against a hub's list.
+    */
+   static int[] intersect(int[] a, int[] b){
+      if (a.length > b.length){
+         int[] t = a;
+         a = b;
+         b = t;
+      }//end if
+      int[] out = new int[a.length];
+      int n = 0, lo = 0;
+      for (int x : a){
+         // every b[i] with i < lo is below x
+         int hi = lo;
+         for (int step = 1; hi < b.length && b[hi] < x; step <<= 1){
+            lo = hi + 1;
+            hi += step;
+         }//end for
+         int pos = Arrays.binarySearch(b, lo, Math.min(hi + 1, b.length), x);
+         if (pos >= 0){
+            out[n++] = x;
+            lo = pos + 1;
+         }else{
+            lo = -pos - 1;
+         }//end if
+         if (lo == b.length)
+            break;
+      }//end for
+      return n == out.length ? out : Arrays.copyOf(out, n);
+   }//end intersect
+
+   private static void link(int[][] adj, int u, int v){
+      adj[u] = insert(adj[u], v);
+      adj[v] = insert(adj[v], u);
+   }//end link
+
+   private static void unlink(int[][] adj, int u, int v){
+      adj[u] = remove(adj[u], v);
+      adj[v] = remove(adj[v], u);
+   }//end unlink
+
+   private static int[] insert(int[] list, int v){
+      int pos = Arrays.binarySearch(list, v);
+      if (pos >= 0)
+         return list;
+      pos = -pos - 1;
+      int[] out = new int[list.length + 1];
+      System.arraycopy(list, 0, out, 0, pos);
+      out[pos] = v;
+      System.arraycopy(list, pos, out, pos + 1, list.length - pos);
+      return out;
+   }//end insert
+
+   private static int[] remove(int[] list, int v){
+      int pos = Arrays.binarySearch(list, v);
+      if (pos < 0)
+         return list;
+      int[] out = new int[list.length - 1];
+      System.arraycopy(list, 0, out, 0, pos);
+      System.arraycopy(list, pos + 1, out, pos, list.length - pos - 1);
+      return out;
+   }//end remove
+
+   static int[] sortedUnique(int[] list){
+      if (list.length == 0)
+         return EMPTY;
+      Arrays.sort(list);
+      int k = 1;
+      for (int i = 1; i < list.length; ++i)
+         if (list[i] != list[k - 1])
+            list[k++] = list[i];
+      return k == list.length ? list : Arrays.copyOf(list, k);
+   }//end sortedUnique
+
+}//end SocialGraph
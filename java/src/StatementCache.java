@@ -0,0 +1,116 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the PreparedStatements of one connection in a bounded
+ * LRU cache keyed by their SQL template, so a query that is run again reuses
+ * the client side statement instead of building it again. When the cache is
+ * full the least recently used statement is closed.
+ *
+ * The bundled pg73 driver does not prepare on the server by default: it
+ * substitutes the bound values into the SQL text, and the server parses and
+ * plans every execution. Setting the profnetwork.serverPrepare system
+ * property to true makes each cached statement a server side PREPARE, so
+ * its plan is reused too. It is off by default because that driver types
+ * string parameters as varchar, and a varchar compared with the char
+ * columns (CONNECTION_USR.connectionId, status) can keep the planner off
+ * their indexes.
+ *
+ * Statements handed out by prepare belong to the cache and must not be
+ * closed by the caller.
+ */
+public class StatementCache {
+
+   // number of templates kept per connection when none is given
+   public static final int DEFAULT_CAPACITY = 64;
+
+   private static final boolean SERVER_PREPARE = Boolean.getBoolean("profnetwork.serverPrepare");
+
+   private final Connection connection;
+   private final Map<String, PreparedStatement> statements;
+
+   /**
+    * Creates a cache for the given connection.
+    *
+    * @param connection the connection statements are prepared on
+    * @param capacity the most statements kept open at once
+    */
+   public StatementCache (Connection connection, final int capacity) {
+      this.connection = connection;
+      this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+         protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest){
+            if (size() <= capacity)
+               return false;
+            closeQuietly(eldest.getValue());
+            return true;
+         }
+      };
+   }//end StatementCache
+
+   /**
+    * Returns the cached statement for sql, preparing it on first use, with
+    * params bound to its placeholders in order.
+    *
+    * @param sql the SQL template, with ? placeholders
+    * @param params the values bound to the placeholders
+    * @return the bound statement
+    * @throws java.sql.SQLException when the statement could not be prepared or bound
+    */
+   public synchronized PreparedStatement prepare (String sql, Object... params) throws SQLException {
+      PreparedStatement stmt = this.statements.get(sql);
+      if (stmt == null){
+         stmt = this.connection.prepareStatement(sql);
+         if (SERVER_PREPARE)
+            useServerPrepare(stmt);
+         this.statements.put(sql, stmt);
+      }//end if
+      stmt.clearParameters();
+      for (int i = 0; i < params.length; ++i){
+         if (params[i] == null)
+            stmt.setNull(i + 1, Types.VARCHAR);
+         else
+            stmt.setObject(i + 1, params[i]);
+      }//end for
+      return stmt;
+   }//end prepare
+
+   /**
+    * Closes every cached statement.
+    */
+   public synchronized void close(){
+      for (PreparedStatement stmt : this.statements.values())
+         closeQuietly(stmt);
+      this.statements.clear();
+   }//end close
+
+   /*
+    * Turns on org.postgresql.PGStatement.setUseServerPrepare, looked up by
+    * name so the driver need not be on the compile classpath. Drivers
+    * without it keep preparing on the client.
+    */
+   private static void useServerPrepare(PreparedStatement stmt) throws SQLException {
+      try{
+         Method m = Class.forName("org.postgresql.PGStatement").getMethod("setUseServerPrepare", boolean.class);
+         if (m.getDeclaringClass().isInstance(stmt))
+            m.invoke(stmt, Boolean.TRUE);
+      }catch (ReflectiveOperationException e){
+         // not a PostgreSQL statement, or a driver without it.
+      }//end try
+   }//end useServerPrepare
+
+   private static void closeQuietly(PreparedStatement stmt){
+      try{
+         stmt.close();
+      }catch (SQLException e){
+         // ignored.
+      }//end try
+   }//end closeQuietly
+
+}//end StatementCache
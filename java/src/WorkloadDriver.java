@@ -0,0 +1,481 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class load tests the menus end to end: many simulated users run
+ * sessions through ProfNetwork.runMenu at once, against one shared
+ * ConnectionPool, exactly as SessionServer clients would.
+ *
+ * A session is a list of steps (login, view a profile, browse friends,
+ * search, read the inbox, send a message or a request, logout), each a few
+ * lines of menu input. Sessions are generated at random, or replayed from a
+ * file. Generated sessions log in as the driver's own test accounts
+ * (workload_0000 and up, see seedLogins), created on the first run and
+ * kept for later ones, since the hashed passwords of real users cannot be
+ * recovered. They search for, message and request real users sampled out
+ * of the database. Each simulated user's thread is attached to
+ * SessionServer's stream routing: its input answers from the session, its
+ * screen output is captured. A step ends when the user menu (or,
+ * after logout, the login menu) is printed again; if the step's input ran
+ * out inside a submenu the driver backs out with "9" (or that menu's way
+ * out) first. The time from a step's first line to that point is its latency.
+ *
+ * Generated sessions write too (unless writes=false): the messages and
+ * requests they send are deleted when the run ends, but the new-user request
+ * quota (fCon) they use up is not given back.
+ *
+ * Recorded sessions are plain text: "@name" starts a step, the lines after it
+ * are its input, and a blank line ends the session.
+ *
+ * Usage: java WorkloadDriver <dbname> <port> <user> [name=value ...]
+ */
+public class WorkloadDriver {
+
+   // printed at the end of the user menu and of the login menu
+   private static final String USER_MENU = "9. Log out";
+   private static final String LOGIN_MENU = "9. < EXIT";
+
+   // answers given inside a step before the session is abandoned
+   private static final int MAX_ESCAPES = 20;
+
+   // test accounts the generated sessions log in as, and real users sampled as their targets
+   private static final int SAMPLES = 1000;
+
+   // login of every test account; only its hash is stored
+   static final String TEST_PASSWORD = "workload";
+
+   // contents of the messages sent by generated sessions, deleted afterwards
+   private static final String DRIVER_MESSAGE = "workload message";
+
+   private static final String[] STEPS = { "profile", "friends", "search", "inbox", "requests", "message", "request" };
+   private static final int[] STEP_WEIGHTS = { 25, 20, 20, 15, 10, 5, 5 };
+
+   /**
+    * One step of a session: its input lines and the menu it should end at.
+    */
+   static class Step {
+      final String name;
+      final List<String> lines;
+
+      Step (String name, String... lines) {
+         this.name = name;
+         this.lines = new ArrayList<String>(Arrays.asList(lines));
+      }
+
+      String expect(){
+         return this.name.equals("logout") ? LOGIN_MENU : USER_MENU;
+      }
+   }//end Step
+
+   /**
+    * Per step name totals, shared by every simulated user.
+    */
+   static class OpStats {
+      final LatencyHistogram latency = new LatencyHistogram();
+      final AtomicLong errors = new AtomicLong();
+   }//end OpStats
+
+   private final ConnectionPool pool;
+   private final int users;
+   private final long warmupNanos;
+   private final long runNanos;
+   private final long thinkMillis;
+   private final boolean writes;
+   private final long seed;
+   private final Map<String, OpStats> stats = Collections.synchronizedMap(new TreeMap<String, OpStats>());
+   private final AtomicLong sessions = new AtomicLong();
+   private final AtomicLong abandoned = new AtomicLong();
+   // (sender, recipient) of every request the run sent, removed afterwards
+   private final List<String[]> requested = Collections.synchronizedList(new ArrayList<String[]>());
+
+   private List<List<Step>> recorded = null;
+   private List<List<String>> sample;
+   private List<String> others;
+
+   public WorkloadDriver (ConnectionPool pool, int users, double warmupSecs, double runSecs, long thinkMillis, boolean writes, long seed) {
+      this.pool = pool;
+      this.users = users;
+      this.warmupNanos = (long) (warmupSecs * 1e9);
+      this.runNanos = (long) (runSecs * 1e9);
+      this.thinkMillis = thinkMillis;
+      this.writes = writes;
+      this.seed = seed;
+   }//end WorkloadDriver
+
+   public static void main (String[] args) {
+      if (args.length < 3) {
+         System.err.println ("Usage: java [-classpath <classpath>] " + WorkloadDriver.class.getName () +
+                             " <dbname> <port> <user> [users=<n>] [time=<secs>] [warmup=<secs>] [think=<ms>]" +
+                             " [pool=<connections>] [writes=true|false] [sessions=<file>] [seed=<s>]");
+         return;
+      }//end if
+      int users = 50, poolSize = 10;
+      double time = 30, warmup = 5;
+      long think = 100, seed = 1;
+      boolean writes = true;
+      String sessionFile = null;
+      ConnectionPool pool = null;
+      try{
+         for (int i = 3; i < args.length; ++i){
+            String name = args[i].substring(0, Math.max(0, args[i].indexOf('=')));
+            String value = args[i].substring(args[i].indexOf('=') + 1);
+            if (name.equals("users")) users = Integer.parseInt(value);
+            else if (name.equals("time")) time = Double.parseDouble(value);
+            else if (name.equals("warmup")) warmup = Double.parseDouble(value);
+            else if (name.equals("think")) think = Long.parseLong(value);
+            else if (name.equals("pool")) poolSize = Integer.parseInt(value);
+            else if (name.equals("writes")) writes = Boolean.parseBoolean(value);
+            else if (name.equals("sessions")) sessionFile = value;
+            else if (name.equals("seed")) seed = Long.parseLong(value);
+            else throw new IllegalArgumentException("unknown argument " + args[i]);
+         }//end for
+         Class.forName ("org.postgresql.Driver");
+         String url = "jdbc:postgresql://localhost:" + args[1] + "/" + args[0];
+         pool = new ConnectionPool(url, args[2], "", poolSize, 60000);
+         WorkloadDriver driver = new WorkloadDriver(pool, users, warmup, time, think, writes, seed);
+         if (sessionFile != null)
+            driver.recorded = readSessions(sessionFile);
+         RequestQuota.start(new ProfNetwork(pool));
+         driver.run();
+         RequestQuota.stop();
+         driver.report(System.out, time);
+         driver.cleanup();
+      }catch (Exception e){
+         System.err.println (e.getMessage ());
+      }finally{
+         if (pool != null)
+            pool.close();
+      }//end try
+   }//end main
+
+   /**
+    * Parses a recorded sessions file, see the class comment.
+    */
+   static List<List<Step>> readSessions(String file) throws IOException {
+      List<List<Step>> all = new ArrayList<List<Step>>();
+      List<Step> session = new ArrayList<Step>();
+      BufferedReader r = new BufferedReader(new FileReader(file));
+      try{
+         for (String line = r.readLine(); line != null; line = r.readLine()){
+            if (line.trim().length() == 0){
+               if (!session.isEmpty())
+                  all.add(session);
+               session = new ArrayList<Step>();
+            }else if (line.startsWith("@")){
+               session.add(new Step(line.substring(1).trim()));
+            }else if (session.isEmpty()){
+               throw new IOException(file + ": input before the first @step: " + line);
+            }else{
+               session.get(session.size() - 1).lines.add(line);
+            }//end if
+         }//end for
+      }finally{
+         r.close();
+      }//end try
+      if (!session.isEmpty())
+         all.add(session);
+      if (all.isEmpty())
+         throw new IOException(file + ": no sessions");
+      return all;
+   }//end readSessions
+
+   /**
+    * Runs every simulated user until the run time is up and waits for their
+    * last sessions to finish.
+    */
+   public void run() throws Exception {
+      if (this.recorded == null){
+         ProfNetwork esql = new ProfNetwork(this.pool);
+         this.sample = seedLogins(esql, SAMPLES);
+         this.others = new ArrayList<String>();
+         for (List<String> r : esql.executeQueryAndReturnResult(
+               "SELECT userId FROM USR WHERE userId NOT LIKE 'workload\\_%' ORDER BY random() LIMIT ?", SAMPLES))
+            this.others.add(r.get(0));
+         if (this.others.isEmpty())
+            for (List<String> r : this.sample)
+               this.others.add(r.get(0));
+      }//end if
+      SessionServer.install();
+      final long start = System.nanoTime();
+      List<Thread> threads = new ArrayList<Thread>();
+      for (int u = 0; u < this.users; ++u){
+         final Random rnd = new Random(this.seed * 1000003L + u);
+         Thread t = new Thread(new Runnable() {
+            public void run(){
+               simulate(rnd, start + warmupNanos, start + warmupNanos + runNanos);
+            }
+         }, "simulated-user-" + u);
+         t.setDaemon(true);
+         t.start();
+         threads.add(t);
+      }//end for
+      for (Thread t : threads)
+         t.join();
+   }//end run
+
+   /*
+    * One simulated user: sessions back to back until the deadline.
+    */
+   private void simulate(Random rnd, long measureFrom, long deadline){
+      Screen screen = new Screen();
+      Screen errors = new Screen();
+      Script script = new Script(rnd, screen, errors, measureFrom, deadline);
+      SessionServer.attach(script, new PrintStream(screen, true), new PrintStream(errors, true));
+      ProfNetwork esql = new ProfNetwork(this.pool);
+      try{
+         while (System.nanoTime() < deadline){
+            script.start(this.recorded != null ? this.recorded.get(rnd.nextInt(this.recorded.size())) : session(rnd));
+            try{
+               ProfNetwork.runMenu(esql);
+               this.sessions.incrementAndGet();
+            }catch (SessionServer.SessionClosed e){
+               this.abandoned.incrementAndGet();
+            }//end try
+         }//end while
+      }finally{
+         SessionServer.detach();
+      }//end try
+   }//end simulate
+
+   /**
+    * Creates the test accounts workload_0000 to workload_<n - 1>, those that
+    * do not exist yet, all with TEST_PASSWORD. Accounts 2k and 2k + 1 are
+    * friends, so the friend steps have someone to look at.
+    *
+    * @return each account's userId, password and friend, as the sessions use them
+    */
+   static List<List<String>> seedLogins(ProfNetwork esql, int n) throws SQLException {
+      // one hash for all: hashing n passwords would cost seconds, and these are test logins
+      String hash = Auth.hash(TEST_PASSWORD);
+      List<List<String>> logins = new ArrayList<List<String>>();
+      List<Object[]> accounts = new ArrayList<Object[]>();
+      List<Object[]> friends = new ArrayList<Object[]>();
+      for (int i = 0; i < n; ++i){
+         String id = String.format("workload_%04d", i);
+         String friend = String.format("workload_%04d", i ^ 1);
+         logins.add(Arrays.asList(id, TEST_PASSWORD, (i ^ 1) < n ? friend : null));
+         accounts.add(new Object[] { id, hash, id + "@workload.test" });
+         if ((i & 1) == 0 && i + 1 < n)
+            friends.add(new Object[] { id, friend });
+      }//end for
+      Map<String, List<Object[]>> batches = new LinkedHashMap<String, List<Object[]>>();
+      batches.put("INSERT INTO USR (userId, password, email) VALUES (?, ?, ?) ON CONFLICT (userId) DO NOTHING", accounts);
+      batches.put("INSERT INTO CONNECTION_USR (userId, connectionId, status) VALUES (?, ?, 'Accept') ON CONFLICT DO NOTHING", friends);
+      esql.executeBatches(batches);
+      return logins;
+   }//end seedLogins
+
+   /*
+    * A random session: login, 3 to 10 weighted steps, logout.
+    */
+   List<Step> session(Random rnd){
+      List<String> me = this.sample.get(rnd.nextInt(this.sample.size()));
+      String other = this.others.get(rnd.nextInt(this.others.size()));
+      List<Step> steps = new ArrayList<Step>();
+      steps.add(new Step("login", "2", me.get(0), me.get(1)));
+      int total = 0;
+      for (int w : STEP_WEIGHTS)
+         total += w;
+      for (int n = 3 + rnd.nextInt(8); n > 0; --n){
+         int pick = rnd.nextInt(total), s = 0;
+         while (pick >= STEP_WEIGHTS[s])
+            pick -= STEP_WEIGHTS[s++];
+         String name = STEPS[s];
+         if (name.equals("profile"))
+            steps.add(new Step(name, "1"));
+         else if (name.equals("friends") && me.get(2) != null)
+            steps.add(new Step(name, "2", "1", "2", me.get(2)));
+         else if (name.equals("friends"))
+            steps.add(new Step(name, "2", "1"));
+         else if (name.equals("search"))
+            steps.add(new Step(name, "6", "1", other.substring(0, Math.min(3, other.length()))));
+         else if (name.equals("inbox"))
+            steps.add(new Step(name, "5", "2"));
+         else if (name.equals("requests"))
+            steps.add(new Step(name, "4", "1"));
+         else if (name.equals("message") && this.writes)
+            steps.add(new Step(name, "5", "3", other, DRIVER_MESSAGE, "Y"));
+         else if (name.equals("request") && this.writes)
+            steps.add(new Step(name, "4", "3", other));
+      }//end for
+      steps.add(new Step("logout", "9"));
+      return steps;
+   }//end session
+
+   /*
+    * Keeps what was printed since the last input was read, bounded.
+    */
+   private static class Screen extends OutputStream {
+      private final StringBuilder text = new StringBuilder();
+
+      public void write(int b){
+         if (this.text.length() > 8192)
+            this.text.delete(0, 4096);
+         this.text.append((char) b);
+      }
+
+      String take(){
+         String t = this.text.toString();
+         this.text.setLength(0);
+         return t;
+      }
+   }//end Screen
+
+   /*
+    * The input of one simulated user, see the class comment.
+    */
+   private class Script extends BufferedReader {
+      private final Random rnd;
+      private final Screen screen;
+      private final Screen errors;
+      private final long measureFrom;
+      private final long deadline;
+      private List<Step> steps;
+      private int step, line, escapes;
+      private long stepStart;
+
+      Script (Random rnd, Screen screen, Screen errors, long measureFrom, long deadline) {
+         super(new StringReader(""));
+         this.rnd = rnd;
+         this.screen = screen;
+         this.errors = errors;
+         this.measureFrom = measureFrom;
+         this.deadline = deadline;
+      }
+
+      void start(List<Step> session){
+         this.steps = session;
+         this.step = -1;
+         this.line = 0;
+         this.escapes = 0;
+      }
+
+      public String readLine(){
+         String shown = this.screen.take();
+         if (this.step >= 0 && this.step < this.steps.size()){
+            Step s = this.steps.get(this.step);
+            if (this.line < s.lines.size())
+               return s.lines.get(this.line++);
+            if (!shown.contains(USER_MENU) && !shown.contains(LOGIN_MENU))
+               return escape(shown);
+            finish(s, shown);
+         }//end if
+         if (this.step >= this.steps.size())
+            return escape(shown);
+         ++this.step;
+         // past the deadline, skip to the logout
+         if (System.nanoTime() >= this.deadline && this.step < this.steps.size() - 1)
+            this.step = this.steps.size() - 1;
+         if (this.step >= this.steps.size())
+            return escape(shown);
+         think();
+         this.errors.take();
+         this.line = 0;
+         this.escapes = 0;
+         this.stepStart = System.nanoTime();
+         return readLine();
+      }
+
+      /* answers that back out of whatever menu is showing */
+      private String escape(String shown){
+         if (++this.escapes > MAX_ESCAPES)
+            throw new SessionServer.SessionClosed();
+         if (shown.contains("2. Decline Request"))
+            return "3";
+         if (shown.contains("2. No"))
+            return "2";
+         return "9";
+      }
+
+      private void finish(Step s, String shown){
+         long nanos = System.nanoTime() - this.stepStart;
+         boolean ok = shown.contains(s.expect()) && this.errors.take().length() == 0;
+         if (this.stepStart >= this.measureFrom){
+            OpStats op;
+            synchronized (stats){
+               op = stats.get(s.name);
+               if (op == null){
+                  op = new OpStats();
+                  stats.put(s.name, op);
+               }//end if
+            }//end synchronized
+            op.latency.record(nanos);
+            if (!ok)
+               op.errors.incrementAndGet();
+         }//end if
+         if (recorded == null && s.name.equals("request") && shown.contains("Request Sent!"))
+            requested.add(new String[] { this.steps.get(0).lines.get(1), s.lines.get(2) });
+         // after a failed login or an early logout, skip what's left and exit
+         if (!ok && !shown.contains(USER_MENU))
+            this.step = this.steps.size() - 1;
+      }
+
+      private void think(){
+         if (thinkMillis <= 0)
+            return;
+         try{
+            // exponentially distributed, thinkMillis on average
+            Thread.sleep((long) (-thinkMillis * Math.log(1 - this.rnd.nextDouble())));
+         }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+         }//end try
+      }
+   }//end Script
+
+   /**
+    * Prints throughput, latency percentiles and a histogram per step, then the
+    * per query statistics behind them.
+    */
+   public void report(PrintStream out, double runSecs){
+      out.println(String.format("%d sessions completed, %d abandoned", this.sessions.get(), this.abandoned.get()));
+      out.println(String.format("%-10s %8s %9s %9s %9s %9s %9s %9s %9s %7s",
+                                "STEP", "COUNT", "OPS/SEC", "MEAN ms", "P50 ms", "P90 ms", "P99 ms", "P99.9 ms", "MAX ms", "ERRORS"));
+      synchronized (this.stats){
+         for (Map.Entry<String, OpStats> e : this.stats.entrySet()){
+            LatencyHistogram h = e.getValue().latency;
+            out.println(String.format("%-10s %8d %9.1f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f %7d",
+                                      e.getKey(), h.count(), h.count() / runSecs, h.mean(), h.percentile(0.5),
+                                      h.percentile(0.9), h.percentile(0.99), h.percentile(0.999), h.max(),
+                                      e.getValue().errors.get()));
+         }//end for
+         for (Map.Entry<String, OpStats> e : this.stats.entrySet()){
+            out.println("\n" + e.getKey());
+            e.getValue().latency.print(out);
+         }//end for
+      }//end synchronized
+      out.println("\nQueries by total time");
+      QueryStats.dump(new PrintWriter(out));
+   }//end report
+
+   /*
+    * Deletes the messages and requests the generated sessions created.
+    */
+   private void cleanup() throws Exception {
+      if (this.recorded != null || !this.writes)
+         return;
+      ProfNetwork esql = new ProfNetwork(this.pool);
+      esql.executeUpdate("DELETE FROM MESSAGE WHERE contents = ?", DRIVER_MESSAGE);
+      synchronized (this.requested){
+         for (String[] r : this.requested)
+            esql.executeUpdate("DELETE FROM CONNECTION_USR WHERE userId = ? AND connectionId = ? AND status = 'Request'", r[0], r[1]);
+      }//end synchronized
+   }//end cleanup
+
+}//end WorkloadDriver
@@ -0,0 +1,79 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Behaviour tests for LatencyHistogram: exact buckets below SUB_BUCKETS
+ * microseconds, percentiles within the bucket error above that, the bucket
+ * edges, merging with add, and the empty histogram.
+ *
+ * Usage: java LatencyHistogramTest
+ */
+public class LatencyHistogramTest {
+
+   public static void main (String[] args) {
+      empty();
+      smallValuesAreExact();
+      bucketEdges();
+      percentileError();
+      add();
+      System.out.println("LatencyHistogramTest: ok");
+   }//end main
+
+   static void empty(){
+      LatencyHistogram h = new LatencyHistogram();
+      check(h.count() == 0 && h.percentile(0.99) == 0 && h.mean() == 0, "empty histogram reads 0");
+   }//end empty
+
+   static void smallValuesAreExact(){
+      LatencyHistogram h = new LatencyHistogram();
+      for (int us = 1; us <= 10; ++us)
+         h.record(us * 1000L);
+      check(h.percentile(0.5) == 0.005, "median of 1..10 us, got " + h.percentile(0.5));
+      check(h.percentile(1.0) == 0.010, "max of 1..10 us, got " + h.percentile(1.0));
+      check(h.percentile(0.0) == 0.001, "min of 1..10 us, got " + h.percentile(0.0));
+   }//end smallValuesAreExact
+
+   static void bucketEdges(){
+      // every value falls in the bucket whose range holds it
+      for (long us = 0; us < 1 << 20; us += 1 + us / 64){
+         int i = LatencyHistogram.index(us);
+         check(LatencyHistogram.lowest(i) <= us && us < LatencyHistogram.lowest(i + 1), "bucket of " + us + " us");
+      }//end for
+   }//end bucketEdges
+
+   static void percentileError(){
+      Random rnd = new Random(3);
+      LatencyHistogram h = new LatencyHistogram();
+      long[] values = new long[10000];
+      for (int i = 0; i < values.length; ++i){
+         values[i] = 16 + (long) (Math.exp(rnd.nextDouble() * 14));
+         h.record(values[i] * 1000);
+      }//end for
+      Arrays.sort(values);
+      for (double q : new double[] { 0.5, 0.9, 0.99, 0.999 }){
+         double exact = values[(int) Math.ceil(q * values.length) - 1] / 1e3;
+         double got = h.percentile(q);
+         // the upper edge of the true value's bucket: never below, at most 1/16 above
+         check(got >= exact && got <= exact * (1 + 1.0 / 16), "p" + q + ": " + got + " vs " + exact);
+      }//end for
+   }//end percentileError
+
+   static void add(){
+      LatencyHistogram a = new LatencyHistogram(), b = new LatencyHistogram();
+      a.record(1000);
+      b.record(5000);
+      b.record(3000);
+      a.add(b);
+      check(a.count() == 3, "counts merged");
+      check(a.max() == 0.005, "max merged");
+      check(a.percentile(0.5) == 0.003, "median of the merged values");
+   }//end add
+
+   static void check(boolean ok, String what){
+      if (!ok)
+         throw new AssertionError(what);
+   }//end check
+
+}//end LatencyHistogramTest
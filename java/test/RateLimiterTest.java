@@ -0,0 +1,93 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Behaviour tests for RateLimiter's GCRA buckets: the burst boundary, the
+ * refill of exactly one token per interval, the cap on an idle bucket,
+ * reset, per key independence and concurrent callers. Refill intervals are
+ * long next to the sleeps' jitter so the boundaries are not timing flaky.
+ *
+ * Usage: java RateLimiterTest
+ */
+public class RateLimiterTest {
+
+   public static void main (String[] args) throws Exception {
+      burst();
+      refill();
+      idleBucketIsOnlyFull();
+      resetAndKeys();
+      concurrent();
+      System.out.println("RateLimiterTest: ok");
+   }//end main
+
+   static void burst(){
+      RateLimiter limiter = new RateLimiter(3, 10000);
+      for (int i = 0; i < 3; ++i)
+         check(limiter.tryAcquire("k"), "token " + (i + 1) + " of the burst");
+      check(!limiter.tryAcquire("k"), "the token past the burst is refused");
+      check(!limiter.tryAcquire("k"), "a refused call takes nothing, still refused");
+   }//end burst
+
+   static void refill() throws InterruptedException {
+      RateLimiter limiter = new RateLimiter(2, 300);
+      check(limiter.tryAcquire("k") && limiter.tryAcquire("k"), "burst of 2");
+      check(!limiter.tryAcquire("k"), "empty");
+      // one interval and a bit: one token back, not two
+      Thread.sleep(400);
+      check(limiter.tryAcquire("k"), "one token after one interval");
+      check(!limiter.tryAcquire("k"), "only one token after one interval");
+   }//end refill
+
+   static void idleBucketIsOnlyFull() throws InterruptedException {
+      RateLimiter limiter = new RateLimiter(2, 50);
+      check(limiter.tryAcquire("k"), "first token");
+      // many intervals idle still leaves at most burst tokens
+      Thread.sleep(500);
+      check(limiter.tryAcquire("k") && limiter.tryAcquire("k"), "full bucket after idling");
+      check(!limiter.tryAcquire("k"), "no more than burst after idling");
+   }//end idleBucketIsOnlyFull
+
+   static void resetAndKeys(){
+      RateLimiter limiter = new RateLimiter(1, 10000);
+      check(limiter.tryAcquire("a"), "a's token");
+      check(!limiter.tryAcquire("a"), "a is empty");
+      check(limiter.tryAcquire("b"), "b has its own bucket");
+      limiter.reset("a");
+      check(limiter.tryAcquire("a"), "reset refills a");
+      check(!limiter.tryAcquire("b"), "reset leaves b alone");
+   }//end resetAndKeys
+
+   static void concurrent() throws InterruptedException {
+      final RateLimiter limiter = new RateLimiter(100, 60000);
+      final AtomicInteger granted = new AtomicInteger();
+      final CountDownLatch go = new CountDownLatch(1);
+      Thread[] threads = new Thread[8];
+      for (int t = 0; t < threads.length; ++t){
+         threads[t] = new Thread(new Runnable() {
+            public void run(){
+               try{
+                  go.await();
+               }catch (InterruptedException e){
+                  return;
+               }//end try
+               for (int i = 0; i < 50; ++i)
+                  if (limiter.tryAcquire("shared"))
+                     granted.incrementAndGet();
+            }
+         });
+         threads[t].start();
+      }//end for
+      go.countDown();
+      for (Thread t : threads)
+         t.join();
+      check(granted.get() == 100, "exactly burst tokens across threads, got " + granted.get());
+   }//end concurrent
+
+   static void check(boolean ok, String what){
+      if (!ok)
+         throw new AssertionError(what);
+   }//end check
+
+}//end RateLimiterTest
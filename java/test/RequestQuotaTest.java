@@ -0,0 +1,84 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Behaviour tests for RequestQuota's striped leases: how units are split
+ * over the stripes, that concurrent takers never hand out more units than
+ * were leased, and drain/giveBack on an open lease. The database side of
+ * RequestQuota is not covered here.
+ *
+ * Usage: java RequestQuotaTest
+ */
+public class RequestQuotaTest {
+
+   public static void main (String[] args) throws Exception {
+      split();
+      takeUntilEmpty();
+      concurrentTakes();
+      giveBackAndDrain();
+      System.out.println("RequestQuotaTest: ok");
+   }//end main
+
+   static void split(){
+      RequestQuota.Lease lease = new RequestQuota.Lease(10);
+      int total = 0, min = Integer.MAX_VALUE, max = 0;
+      for (int i = 0; i < lease.stripes.length(); ++i){
+         total += lease.stripes.get(i);
+         min = Math.min(min, lease.stripes.get(i));
+         max = Math.max(max, lease.stripes.get(i));
+      }//end for
+      check(total == 10, "every unit is in a stripe");
+      check(max - min <= 1, "stripes differ by at most one unit");
+      check(new RequestQuota.Lease(0).exhausted && !lease.exhausted, "only an empty lease is exhausted");
+   }//end split
+
+   static void takeUntilEmpty(){
+      RequestQuota.Lease lease = new RequestQuota.Lease(5);
+      for (int i = 0; i < 5; ++i)
+         check(lease.take(), "unit " + (i + 1));
+      check(!lease.take(), "a sixth unit, from other stripes too, is refused");
+      check(lease.drain() == 0, "nothing left to drain");
+   }//end takeUntilEmpty
+
+   static void concurrentTakes() throws InterruptedException {
+      final RequestQuota.Lease lease = new RequestQuota.Lease(1000);
+      final AtomicInteger taken = new AtomicInteger();
+      final CountDownLatch go = new CountDownLatch(1);
+      Thread[] threads = new Thread[8];
+      for (int t = 0; t < threads.length; ++t){
+         threads[t] = new Thread(new Runnable() {
+            public void run(){
+               try{
+                  go.await();
+               }catch (InterruptedException e){
+                  return;
+               }//end try
+               while (lease.take())
+                  taken.incrementAndGet();
+            }
+         });
+         threads[t].start();
+      }//end for
+      go.countDown();
+      for (Thread t : threads)
+         t.join();
+      check(taken.get() == 1000, "exactly the leased units are taken, got " + taken.get());
+   }//end concurrentTakes
+
+   static void giveBackAndDrain() throws Exception {
+      RequestQuota.Lease lease = new RequestQuota.Lease(3);
+      check(lease.take(), "take one");
+      // an open lease keeps the unit in memory, without touching the database
+      lease.giveBack(null, "nobody");
+      check(lease.drain() == 3, "the unit given back is drained with the rest");
+      check(!lease.take(), "a drained lease is empty");
+   }//end giveBackAndDrain
+
+   static void check(boolean ok, String what){
+      if (!ok)
+         throw new AssertionError(what);
+   }//end check
+
+}//end RequestQuotaTest
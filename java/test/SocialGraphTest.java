@@ -0,0 +1,176 @@
+// Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Behaviour tests for SocialGraph's sorted adjacency arrays: intersect,
+ * sortedUnique, the link/unlink behind addRequest, accept and reject, and
+ * the bidirectional search of degreeOfSeparation. No database is needed;
+ * the graphs are built through the public write methods.
+ *
+ * Usage: java SocialGraphTest
+ */
+public class SocialGraphTest {
+
+   public static void main (String[] args) {
+      intersect();
+      intersectRandom();
+      sortedUnique();
+      requestLifecycle();
+      degreeOfSeparation();
+      degreeOfSeparationRandom();
+      mutualFriends();
+      System.out.println("SocialGraphTest: ok");
+   }//end main
+
+   static void intersect(){
+      check(Arrays.equals(new int[0], SocialGraph.intersect(new int[0], new int[] { 1, 2 })), "empty side");
+      check(Arrays.equals(new int[0], SocialGraph.intersect(new int[] { 1, 3 }, new int[] { 2, 4 })), "disjoint");
+      check(Arrays.equals(new int[] { 2, 4 }, SocialGraph.intersect(new int[] { 2, 4 }, new int[] { 1, 2, 3, 4, 5 })), "subset");
+      check(Arrays.equals(new int[] { 5 }, SocialGraph.intersect(new int[] { 1, 2, 3, 4, 5 }, new int[] { 5, 9 })), "last element, swapped sides");
+      // a small list against a hub's list, where the galloping skips far ahead
+      int[] hub = new int[10000];
+      for (int i = 0; i < hub.length; ++i)
+         hub[i] = 2 * i;
+      check(Arrays.equals(new int[] { 0, 9998, 19998 }, SocialGraph.intersect(new int[] { 0, 1, 9998, 19997, 19998, 30000 }, hub)), "against a hub");
+   }//end intersect
+
+   static void intersectRandom(){
+      Random rnd = new Random(1);
+      for (int t = 0; t < 2000; ++t){
+         int[] a = randomSorted(rnd, rnd.nextInt(50), 1 + rnd.nextInt(200));
+         int[] b = randomSorted(rnd, rnd.nextInt(2000), 1 + rnd.nextInt(2000));
+         TreeSet<Integer> expected = new TreeSet<Integer>();
+         for (int x : a)
+            if (Arrays.binarySearch(b, x) >= 0)
+               expected.add(x);
+         int[] got = SocialGraph.intersect(a, b);
+         check(got.length == expected.size(), "random intersect size, case " + t);
+         int i = 0;
+         for (int x : expected)
+            check(got[i++] == x, "random intersect element, case " + t);
+      }//end for
+   }//end intersectRandom
+
+   static void sortedUnique(){
+      check(SocialGraph.sortedUnique(new int[0]).length == 0, "empty list");
+      check(Arrays.equals(new int[] { 1, 2, 3 }, SocialGraph.sortedUnique(new int[] { 3, 1, 3, 2, 1 })), "sorted, duplicates dropped");
+      check(Arrays.equals(new int[] { 7 }, SocialGraph.sortedUnique(new int[] { 7, 7, 7 })), "all duplicates");
+   }//end sortedUnique
+
+   static void requestLifecycle(){
+      SocialGraph g = new SocialGraph();
+      g.addRequest("ann", "bob");
+      check(g.isLinked("ann", "bob") && g.isLinked("bob", "ann"), "a request links both ways");
+      check(!g.areFriends("ann", "bob"), "a request is not a friendship");
+      g.accept("ann", "bob");
+      check(g.areFriends("ann", "bob") && g.areFriends("bob", "ann"), "accept makes friends both ways");
+      g.accept("ann", "bob");
+      check(g.friendCount("ann") == 1 && g.friendCount("bob") == 1, "accept twice adds one friend");
+      g.addRequest("ann", "cat");
+      g.reject("ann", "cat");
+      check(!g.isLinked("ann", "cat"), "reject drops the request");
+      g.reject("nobody", "ann");
+      check(g.friendCount("ann") == 1, "rejecting an unknown user changes nothing");
+   }//end requestLifecycle
+
+   static void degreeOfSeparation(){
+      SocialGraph g = new SocialGraph();
+      String[] chain = { "a", "b", "c", "d", "e" };
+      for (int i = 0; i + 1 < chain.length; ++i)
+         friends(g, chain[i], chain[i + 1]);
+      friends(g, "x", "y");
+      g.addRequest("e", "x");
+      check(g.degreeOfSeparation("a", "a", 3) == 0, "same user");
+      check(g.degreeOfSeparation("a", "b", 3) == 1, "friends");
+      check(g.degreeOfSeparation("a", "d", 3) == 3, "exactly maxHops away");
+      check(g.degreeOfSeparation("a", "e", 3) == -1, "one past maxHops");
+      check(g.degreeOfSeparation("a", "e", 4) == 4, "end to end");
+      check(g.degreeOfSeparation("e", "a", 4) == 4, "symmetric");
+      check(g.degreeOfSeparation("e", "x", 6) == -1, "a pending request is not a path");
+      check(g.degreeOfSeparation("a", "nobody", 6) == -1, "unknown user");
+   }//end degreeOfSeparation
+
+   static void degreeOfSeparationRandom(){
+      Random rnd = new Random(2);
+      int n = 300;
+      SocialGraph g = new SocialGraph();
+      List<List<Integer>> adj = new ArrayList<List<Integer>>();
+      for (int i = 0; i < n; ++i)
+         adj.add(new ArrayList<Integer>());
+      for (int e = 0; e < 450; ++e){
+         int u = rnd.nextInt(n), v = rnd.nextInt(n);
+         if (u == v)
+            continue;
+         friends(g, "u" + u, "u" + v);
+         adj.get(u).add(v);
+         adj.get(v).add(u);
+      }//end for
+      for (int t = 0; t < 500; ++t){
+         int u = rnd.nextInt(n), v = rnd.nextInt(n), maxHops = 1 + rnd.nextInt(6);
+         if (adj.get(u).isEmpty() || adj.get(v).isEmpty())
+            continue;
+         int d = bfs(adj, u, v);
+         int expected = d <= maxHops ? d : -1;
+         check(g.degreeOfSeparation("u" + u, "u" + v, maxHops) == expected,
+               "random graph, u" + u + " to u" + v + " within " + maxHops);
+      }//end for
+   }//end degreeOfSeparationRandom
+
+   static void mutualFriends(){
+      SocialGraph g = new SocialGraph();
+      friends(g, "a", "m1");
+      friends(g, "a", "m2");
+      friends(g, "a", "only_a");
+      friends(g, "b", "m1");
+      friends(g, "b", "m2");
+      g.addRequest("b", "only_a");
+      List<String> mutual = g.mutualFriends("a", "b");
+      check(mutual.size() == 2 && mutual.contains("m1") && mutual.contains("m2"), "mutual friends, requests left out");
+      check(g.mutualFriends("a", "nobody").isEmpty(), "unknown user has none");
+   }//end mutualFriends
+
+   private static void friends(SocialGraph g, String a, String b){
+      g.addRequest(a, b);
+      g.accept(a, b);
+   }//end friends
+
+   /* plain breadth-first search from u, the reference for degreeOfSeparation */
+   private static int bfs(List<List<Integer>> adj, int u, int v){
+      Map<Integer, Integer> dist = new HashMap<Integer, Integer>();
+      ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+      dist.put(u, 0);
+      queue.add(u);
+      while (!queue.isEmpty()){
+         int x = queue.poll();
+         if (x == v)
+            return dist.get(x);
+         for (int y : adj.get(x))
+            if (!dist.containsKey(y)){
+               dist.put(y, dist.get(x) + 1);
+               queue.add(y);
+            }//end if
+      }//end while
+      return Integer.MAX_VALUE;
+   }//end bfs
+
+   private static int[] randomSorted(Random rnd, int size, int range){
+      int[] list = new int[size];
+      for (int i = 0; i < size; ++i)
+         list[i] = rnd.nextInt(range);
+      return SocialGraph.sortedUnique(list);
+   }//end randomSorted
+
+   static void check(boolean ok, String what){
+      if (!ok)
+         throw new AssertionError(what);
+   }//end check
+
+}//end SocialGraphTest
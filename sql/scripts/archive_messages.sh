@@ -0,0 +1,13 @@
+#Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+#!/bin/bash
+# Partition upkeep for MESSAGE, meant to be run from cron (say monthly):
+# adds next year's partition and moves every year older than KEEP_YEARS
+# (default 2) into the compressed MESSAGE_ARCHIVE.
+#
+#   archive_messages.sh [KEEP_YEARS]
+export DB_NAME=$USER"_DB"
+KEEP_YEARS=${1:-2}
+NEXT_YEAR=$(( $(date +%Y) + 1 ))
+psql -h localhost -p $PGPORT $DB_NAME -v ON_ERROR_STOP=1 -c "SELECT message_add_partition($NEXT_YEAR)" &&
+psql -h localhost -p $PGPORT $DB_NAME -v ON_ERROR_STOP=1 -c "SELECT message_archive($KEEP_YEARS) AS years_archived"
@@ -6,3 +6,4 @@ DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd)"
 psql -h localhost -p $PGPORT $DB_NAME < $DIR/../src/create_tables.sql
 psql -h localhost -p $PGPORT $DB_NAME < $DIR/../src/load_data.sql
 psql -h localhost -p $PGPORT $DB_NAME < $DIR/../src/triggers.sql
+psql -h localhost -p $PGPORT $DB_NAME < $DIR/../src/archive.sql
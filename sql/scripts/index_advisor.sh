@@ -0,0 +1,70 @@
+#Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)
+
+#! /bin/bash
+# Runs EXPLAIN ANALYZE on every ProfNetwork query template (src/explain_queries.sql)
+# against the loaded data and prints, per template, the planner's total cost, the
+# measured time and any sequential scans.
+#
+#   index_advisor.sh          compare against the saved baseline, exit 1 on regressions
+#   index_advisor.sh --save   record the current plans as the new baseline
+#
+# A template regresses when its cost grows past REGRESSION_FACTOR times the
+# baseline or when it picks up a sequential scan it did not have before.
+export DB_NAME=$USER"_DB"
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd)"
+BASELINE=$DIR/plan_baseline.txt
+REGRESSION_FACTOR=1.5
+
+psql -h localhost -p $PGPORT $DB_NAME -f $DIR/../src/explain_queries.sql > /tmp/$USER-explain.txt 2>&1 || {
+   cat /tmp/$USER-explain.txt
+   exit 2
+}
+
+# one line per template: name cost ms seqscans(comma separated, - when none)
+awk '
+   /^== / { flush(); name = $2; cost = ""; ms = ""; seq = ""; next }
+   name != "" && cost == "" && match($0, /cost=[0-9.]+\.\.[0-9.]+/) {
+      split(substr($0, RSTART + 5, RLENGTH - 5), c, "\\.\\."); cost = c[2]
+   }
+   name != "" && match($0, /Seq Scan on [a-z_]+/) {
+      t = substr($0, RSTART + 12, RLENGTH - 12)
+      if (index("," seq ",", "," t ",") == 0) seq = (seq == "" ? t : seq "," t)
+   }
+   name != "" && /(Execution Time|Total runtime):/ { ms = $(NF - 1) }
+   function flush() { if (name != "") printf "%s %s %s %s\n", name, cost, ms, (seq == "" ? "-" : seq) }
+   END { flush() }
+' /tmp/$USER-explain.txt > /tmp/$USER-plans.txt
+
+printf "%-24s %12s %10s  %s\n" TEMPLATE COST MS SEQ_SCANS
+while read name cost ms seq; do
+   printf "%-24s %12s %10s  %s\n" $name $cost $ms $seq
+done < /tmp/$USER-plans.txt
+
+if [ "$1" == "--save" ]; then
+   cp /tmp/$USER-plans.txt $BASELINE
+   echo "Baseline saved to $BASELINE"
+   exit 0
+fi
+
+if [ ! -f $BASELINE ]; then
+   echo "No baseline yet, run with --save to record one"
+   exit 0
+fi
+
+regressions=$(awk -v factor=$REGRESSION_FACTOR '
+   NR == FNR { cost[$1] = $2; seq[$1] = $4; next }
+   !($1 in cost) { next }
+   $2 > cost[$1] * factor { printf "REGRESSION %s: cost %s -> %s\n", $1, cost[$1], $2 }
+   $4 != "-" {
+      n = split($4, now, ",")
+      for (i = 1; i <= n; i++)
+         if (index("," seq[$1] ",", "," now[i] ",") == 0)
+            printf "REGRESSION %s: new seq scan on %s\n", $1, now[i]
+   }
+' $BASELINE /tmp/$USER-plans.txt)
+
+if [ -n "$regressions" ]; then
+   echo "$regressions"
+   exit 1
+fi
+echo "No plan regressions against $BASELINE"
@@ -0,0 +1,70 @@
+/*Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)*/
+
+/*Partition upkeep and archival for MESSAGE, run after create_tables.sql and load_data.sql*/
+
+/*Adds the partition for one year, moving in any of its rows that already landed in MESSAGE_DEFAULT*/
+CREATE OR REPLACE FUNCTION message_add_partition(y integer)
+RETURNS void AS
+$BODY$
+DECLARE
+part text := 'message_y' || y;
+BEGIN
+IF to_regclass(part) IS NOT NULL THEN
+   RETURN;
+END IF;
+EXECUTE format('CREATE TABLE %I (LIKE MESSAGE INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', part);
+EXECUTE format('WITH moved AS (DELETE FROM MESSAGE_DEFAULT WHERE sendTime >= %L AND sendTime < %L RETURNING *) ' ||
+               'INSERT INTO %I SELECT * FROM moved', make_date(y, 1, 1), make_date(y + 1, 1, 1), part);
+EXECUTE format('ALTER TABLE MESSAGE ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+               part, make_date(y, 1, 1), make_date(y + 1, 1, 1));
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+/*Moves every year ending more than keep_years ago to MESSAGE_ARCHIVE and drops its partition*/
+/*Messages already deleted on a side are not archived for that side; returns the years moved*/
+CREATE OR REPLACE FUNCTION message_archive(keep_years integer)
+RETURNS integer AS
+$BODY$
+DECLARE
+y integer;
+moved integer := 0;
+BEGIN
+FOR y IN SELECT substring(c.relname FROM 'message_y([0-9]{4})')::int FROM pg_inherits i, pg_class c
+         WHERE i.inhparent = 'message'::regclass AND c.oid = i.inhrelid AND c.relname ~ '^message_y[0-9]{4}$'
+         ORDER BY 1 LOOP
+   CONTINUE WHEN y >= extract(year FROM now())::int - keep_years;
+   EXECUTE format('ALTER TABLE MESSAGE DETACH PARTITION %I', 'message_y' || y);
+   EXECUTE format('INSERT INTO MESSAGE_ARCHIVE ' ||
+                  'SELECT receiverId, ''R'', %L, min(sendTime), max(sendTime), jsonb_agg(to_jsonb(M) ORDER BY sendTime, msgId) ' ||
+                  'FROM %I M WHERE deleteStatus IN (0,1) AND status <> ''Draft'' GROUP BY receiverId',
+                  make_date(y, 1, 1), 'message_y' || y);
+   EXECUTE format('INSERT INTO MESSAGE_ARCHIVE ' ||
+                  'SELECT senderId, ''S'', %L, min(sendTime), max(sendTime), jsonb_agg(to_jsonb(M) ORDER BY sendTime, msgId) ' ||
+                  'FROM %I M WHERE deleteStatus IN (0,2) GROUP BY senderId',
+                  make_date(y, 1, 1), 'message_y' || y);
+   EXECUTE format('DROP TABLE %I', 'message_y' || y);
+   moved := moved + 1;
+END LOOP;
+RETURN moved;
+END;
+$BODY$
+LANGUAGE plpgsql VOLATILE;
+
+/*One keyset page of a user's archived outbox (side S) or inbox (side R), in the columns ViewMessage shows*/
+/*Only the archive rows of that user and side older than the cursor are decompressed*/
+CREATE OR REPLACE FUNCTION message_archive_page(owner varchar, box char, before_time timestamp, before_id integer, n integer)
+RETURNS TABLE(msgId integer, otherId varchar, sendTime timestamp, contents varchar) AS
+$BODY$
+SELECT m.msgId, CASE WHEN box = 'S' THEN m.receiverId ELSE m.senderId END, m.sendTime, m.contents
+FROM MESSAGE_ARCHIVE A,
+     jsonb_to_recordset(A.messages) AS m(msgid integer, senderid varchar, receiverid varchar, contents varchar, sendtime timestamp)
+WHERE A.ownerId = owner AND A.side = box AND A.firstTime <= before_time
+AND (m.sendTime, m.msgId) < (before_time, before_id)
+ORDER BY m.sendTime DESC, m.msgId DESC
+LIMIT n;
+$BODY$
+LANGUAGE sql STABLE;
+
+/*Messages sent before the status spelling was settled say 'SENT'; the app, message_unread and markDelivered match 'Sent'*/
+UPDATE MESSAGE SET status = 'Sent' WHERE status = 'SENT';
@@ -3,13 +3,15 @@
 DROP TABLE WORK_EXPR;
 DROP TABLE EDUCATIONAL_DETAILS;
 DROP TABLE MESSAGE;
+DROP TABLE MESSAGE_ARCHIVE;
+DROP TABLE PEOPLE_YOU_MAY_KNOW;
 DROP TABLE CONNECTION_USR;
 DROP TABLE USR;
 
 
 CREATE TABLE USR(
         userId varchar(30) UNIQUE NOT NULL,
-        password varchar(30) NOT NULL,
+        password varchar(200) NOT NULL,
         email text NOT NULL,
         name char(50),
         dateOfBirth date,
@@ -37,17 +39,57 @@ CREATE TABLE EDUCATIONAL_DETAILS(
         PRIMARY KEY(userId,major,degree),
         FOREIGN KEY (userID) REFERENCES USR(userID));
 
+/*Partitioned by year of sendTime so old years can be archived whole (see archive.sql)*/
+/*msgId comes from msgID_seq; the key has to include the partition column*/
+/*Drafts get the time they were written as sendTime*/
 CREATE TABLE MESSAGE(
-        msgId integer UNIQUE NOT NULL,
+        msgId integer NOT NULL,
         senderId varchar(30) NOT NULL,
         receiverId varchar(30) NOT NULL,
-        contents char(500) NOT NULL,
-        sendTime timestamp,
+        contents varchar(500) NOT NULL,
+        sendTime timestamp NOT NULL DEFAULT now(),
         deleteStatus integer,
         status char(30) NOT NULL,
-        PRIMARY KEY(msgId),
+        PRIMARY KEY(msgId,sendTime),
         FOREIGN KEY (senderID) REFERENCES USR(userID),
-        FOREIGN KEY (receiverID) REFERENCES USR(userID));
+        FOREIGN KEY (receiverID) REFERENCES USR(userID))
+        PARTITION BY RANGE (sendTime);
+
+/*One partition per year from 2000 to next year, anything else lands in the default one*/
+DO $$
+BEGIN
+FOR y IN 2000 .. extract(year FROM now())::int + 1 LOOP
+EXECUTE format('CREATE TABLE message_y%s PARTITION OF MESSAGE FOR VALUES FROM (%L) TO (%L)',
+               y, make_date(y, 1, 1), make_date(y + 1, 1, 1));
+END LOOP;
+END
+$$;
+CREATE TABLE MESSAGE_DEFAULT PARTITION OF MESSAGE DEFAULT;
+
+/*Cold store for archived years: one row per user, side (S sent, R received) and year,*/
+/*holding that user's messages as one jsonb array, which TOAST keeps compressed*/
+CREATE TABLE MESSAGE_ARCHIVE(
+        ownerId varchar(30) NOT NULL,
+        side char(1) NOT NULL,
+        period date NOT NULL,
+        firstTime timestamp NOT NULL,
+        lastTime timestamp NOT NULL,
+        messages jsonb NOT NULL,
+        PRIMARY KEY(ownerId,side,period));
+
+/*People you may know, rebuilt by Recommender: each refresh writes every user's*/
+/*top suggestions in rank order under a new generation, then drops the older ones.*/
+/*A user with no suggestions gets one rank 0 row with their own id as suggestedId*/
+CREATE TABLE PEOPLE_YOU_MAY_KNOW(
+        userId varchar(30) NOT NULL,
+        generation integer NOT NULL,
+        rank integer NOT NULL,
+        suggestedId varchar(30) NOT NULL,
+        mutualFriends integer NOT NULL,
+        sharedCompanies integer NOT NULL,
+        sharedInstitutions integer NOT NULL,
+        score integer NOT NULL,
+        PRIMARY KEY(userId,generation,rank));
 
 CREATE TABLE CONNECTION_USR(
         userId varchar(30) NOT NULL,
@@ -55,3 +97,27 @@ CREATE TABLE CONNECTION_USR(
         status char(30) NOT NULL,
         PRIMARY KEY(userId,connectionId),
         FOREIGN KEY (userID) REFERENCES USR(userID));
+
+/*Trigram indexes behind the people search (srcPpl), ranked by similarity*/
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX usr_userid_trgm ON USR USING gin (userId gin_trgm_ops);
+CREATE INDEX usr_name_trgm ON USR USING gin (rtrim(name) gin_trgm_ops);
+
+/*Secondary indexes for the hottest ProfNetwork predicates*/
+/*Login reads only the password hash, so an index-only scan answers it*/
+CREATE UNIQUE INDEX usr_login ON USR (userId) INCLUDE (password);
+/*Reverse side of the friend/request lookups: connectionId = ? AND status = ?, covering userId*/
+CREATE INDEX connection_usr_conn_status ON CONNECTION_USR (connectionId, status, userId);
+/*Accepted edges only, both directions, for friend checks and the hop traversal*/
+CREATE INDEX connection_usr_accept_fwd ON CONNECTION_USR (userId, connectionId) WHERE status = 'Accept';
+CREATE INDEX connection_usr_accept_rev ON CONNECTION_USR (connectionId, userId) WHERE status = 'Accept';
+/*One row per pair of users, whichever of them asked: the ON CONFLICT arbiter of every request*/
+CREATE UNIQUE INDEX connection_usr_pair ON CONNECTION_USR (least(userId, rtrim(connectionId)), greatest(userId, rtrim(connectionId)));
+/*Inbox and outbox only read rows their owner has not deleted, a page at a time in (sendTime, msgId) order*/
+CREATE INDEX message_inbox ON MESSAGE (receiverId, sendTime, msgId) WHERE deleteStatus IN (0,1);
+CREATE INDEX message_outbox ON MESSAGE (senderId, sendTime, msgId) WHERE deleteStatus IN (0,2);
+/*Unread count: only the messages not yet delivered*/
+CREATE INDEX message_unread ON MESSAGE (receiverId) WHERE status = 'Sent' AND deleteStatus IN (0,1);
+/*Messages both sides deleted, waiting for the background purge*/
+CREATE INDEX message_purge ON MESSAGE (msgId) WHERE deleteStatus = 3;
+/*Per-user WORK_EXPR and EDUCATIONAL_DETAILS lookups use their primary keys, which lead with userId*/
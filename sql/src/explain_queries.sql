@@ -0,0 +1,119 @@
+/*Ivann De La Cruz(SID: 862081651), Kenneth Alvarez(SID: 862026376)*/
+
+/*EXPLAIN ANALYZE of every query template ProfNetwork runs, read by index_advisor.sh*/
+/*Each plan is preceded by a "== name" line; writes run inside a rolled back transaction*/
+
+\set QUIET on
+\pset pager off
+\pset tuples_only on
+
+/*Sample parameters: the best connected user, one of their friends and a message they received*/
+SELECT userId AS usr FROM (SELECT userId FROM CONNECTION_USR UNION ALL SELECT rtrim(connectionId) FROM CONNECTION_USR) E
+GROUP BY userId ORDER BY count(*) DESC LIMIT 1 \gset
+SELECT rtrim(connectionId) AS friend FROM CONNECTION_USR WHERE userId = :'usr' AND status = 'Accept' LIMIT 1 \gset
+SELECT coalesce(max(msgId), 0) AS msg FROM MESSAGE WHERE receiverId = :'usr' \gset
+
+\echo == login
+EXPLAIN ANALYZE SELECT password FROM USR WHERE userId = :'usr';
+
+\echo == people_you_may_know
+EXPLAIN ANALYZE SELECT P.rank, P.suggestedId, P.mutualFriends, P.sharedCompanies, P.sharedInstitutions, P.generation
+FROM PEOPLE_YOU_MAY_KNOW P
+WHERE P.userId = :'usr' AND P.generation = (SELECT max(generation) FROM PEOPLE_YOU_MAY_KNOW WHERE userId = :'usr')
+ORDER BY P.rank;
+
+\echo == user_exists
+EXPLAIN ANALYZE SELECT EXISTS (SELECT 1 FROM USR WHERE userId = :'usr');
+
+\echo == profile
+EXPLAIN ANALYZE SELECT 0 AS part, CAST(U.name AS text), CAST(U.userId AS text), U.email, CAST(U.dateOfBirth AS text), CAST(NULL AS text) FROM USR U WHERE U.userId = :'usr'
+UNION ALL SELECT 1, CAST(W.company AS text), CAST(W.role AS text), CAST(W.location AS text), CAST(W.startDate AS text), CAST(W.endDate AS text) FROM WORK_EXPR W WHERE W.userId = :'usr'
+UNION ALL SELECT 2, CAST(E.instituitionName AS text), CAST(E.major AS text), CAST(E.degree AS text), CAST(E.startDate AS text), CAST(E.endDate AS text) FROM EDUCATIONAL_DETAILS E WHERE E.userId = :'usr'
+ORDER BY part;
+
+\echo == search_people
+EXPLAIN ANALYZE SELECT U.userId AS Username, U.name AS Name FROM USR U
+WHERE U.userId ILIKE '%ann%' OR rtrim(U.name) ILIKE '%ann%'
+ORDER BY greatest(similarity(U.userId, 'ann'), similarity(rtrim(U.name), 'ann')) DESC, U.userId LIMIT 10 OFFSET 0;
+
+\echo == requests_made
+EXPLAIN ANALYZE SELECT C.connectionId AS Recipient, C.status FROM CONNECTION_USR C WHERE C.userId = :'usr';
+
+\echo == requests_incoming
+EXPLAIN ANALYZE SELECT C.userId AS Sender FROM CONNECTION_USR C WHERE C.connectionId = :'usr' AND status = 'Request';
+
+\echo == graph_load
+EXPLAIN ANALYZE SELECT C.userId, rtrim(C.connectionId), rtrim(C.status) FROM CONNECTION_USR C WHERE C.status IN ('Accept','Request');
+
+\echo == unread_count
+EXPLAIN ANALYZE SELECT count(*) FROM MESSAGE WHERE receiverId = :'usr' AND status = 'Sent' AND deleteStatus IN (0,1);
+
+\echo == outbox_page
+EXPLAIN ANALYZE SELECT msgId, receiverId AS Recipient, sendTime AS Time, contents FROM MESSAGE
+WHERE senderId = :'usr' AND deleteStatus IN (0,2) AND (sendTime, msgId) < (CAST('infinity' AS timestamp), 2147483647)
+ORDER BY sendTime DESC, msgId DESC LIMIT 10;
+
+\echo == inbox_page
+EXPLAIN ANALYZE SELECT msgId, senderId AS Sender, sendTime AS Time, contents FROM MESSAGE
+WHERE receiverId = :'usr' AND deleteStatus IN (0,1) AND status <> 'Draft' AND (sendTime, msgId) < (CAST('infinity' AS timestamp), 2147483647)
+ORDER BY sendTime DESC, msgId DESC LIMIT 10;
+
+\echo == archive_page
+EXPLAIN ANALYZE SELECT * FROM message_archive_page(:'usr', 'R', CAST('infinity' AS timestamp), 2147483647, 10);
+
+
+BEGIN;
+\echo == inbox_mark_delivered
+EXPLAIN ANALYZE UPDATE MESSAGE SET status = 'Delivered' WHERE msgId IN (:msg,:msg,:msg,:msg,:msg,:msg,:msg,:msg,:msg,:msg) AND status = 'Sent';
+
+\echo == send_message
+EXPLAIN ANALYZE INSERT INTO MESSAGE (senderId, receiverId, contents, sendTime, deleteStatus, status)
+SELECT :'usr', U.userId, 'x', now(), 0, 'Sent' FROM USR U WHERE U.userId IN (:'friend', :'usr') RETURNING msgId, receiverId;
+
+\echo == delete_messages
+EXPLAIN ANALYZE UPDATE MESSAGE SET deleteStatus = coalesce(deleteStatus, 0) | 2
+WHERE receiverId = :'usr' AND (coalesce(deleteStatus, 0) & 2) = 0 AND msgId IN (:msg,:msg,:msg,:msg);
+
+\echo == delete_messages_where
+EXPLAIN ANALYZE UPDATE MESSAGE SET deleteStatus = coalesce(deleteStatus, 0) | 2
+WHERE receiverId = :'usr' AND (coalesce(deleteStatus, 0) & 2) = 0 AND status <> 'Draft' AND sendTime < CAST('2016-01-01' AS date);
+
+\echo == purge_deleted
+EXPLAIN ANALYZE DELETE FROM MESSAGE WHERE msgId IN (SELECT msgId FROM MESSAGE WHERE deleteStatus = 3 LIMIT 1000);
+
+\echo == quota_send
+EXPLAIN ANALYZE WITH payer AS (SELECT userId FROM USR WHERE userId = :'usr' AND fCon > 0 FOR UPDATE),
+sent AS (INSERT INTO CONNECTION_USR AS C (userId, connectionId, status)
+SELECT P.userId, T.userId, 'Request' FROM payer P, USR T WHERE T.userId = 'nobody' AND NOT EXISTS (SELECT 1 FROM CONNECTION_USR C WHERE
+least(C.userId, rtrim(C.connectionId)) = least(:'usr', 'nobody') AND greatest(C.userId, rtrim(C.connectionId)) = greatest(:'usr', 'nobody')
+AND C.status IN ('Accept','Request'))
+ON CONFLICT (least(userId, rtrim(connectionId)), greatest(userId, rtrim(connectionId))) DO UPDATE SET userId = EXCLUDED.userId,
+connectionId = EXCLUDED.connectionId, status = 'Request' WHERE C.status = 'Reject' RETURNING C.userId)
+UPDATE USR SET fCon = fCon - 1 WHERE userId IN (SELECT userId FROM sent);
+
+\echo == request_send
+EXPLAIN ANALYZE WITH target AS (SELECT userId FROM USR WHERE userId = :'friend'),
+prior AS (SELECT rtrim(C.status) AS status, C.userId AS sender FROM CONNECTION_USR C WHERE
+least(C.userId, rtrim(C.connectionId)) = least(:'usr', :'friend') AND greatest(C.userId, rtrim(C.connectionId)) = greatest(:'usr', :'friend')),
+sent AS (INSERT INTO CONNECTION_USR AS C (userId, connectionId, status) SELECT :'usr', userId, 'Request' FROM target
+ON CONFLICT (least(userId, rtrim(connectionId)), greatest(userId, rtrim(connectionId))) DO UPDATE SET
+userId = CASE WHEN C.status = 'Reject' THEN EXCLUDED.userId ELSE C.userId END,
+connectionId = CASE WHEN C.status = 'Reject' THEN EXCLUDED.connectionId ELSE C.connectionId END,
+status = CASE WHEN C.status = 'Reject' THEN 'Request' ELSE 'Accept' END
+WHERE C.status = 'Reject' OR (C.status = 'Request' AND C.userId = rtrim(EXCLUDED.connectionId))
+RETURNING rtrim(C.status) AS status)
+SELECT (SELECT count(*) FROM target), (SELECT status FROM sent), (SELECT status FROM prior), (SELECT sender FROM prior);
+
+\echo == accept_request
+EXPLAIN ANALYZE UPDATE CONNECTION_USR SET status = 'Accept' WHERE userId = :'friend' AND connectionId = :'usr' AND status IN ('Request', 'Accept');
+
+\echo == accept_all
+EXPLAIN ANALYZE UPDATE CONNECTION_USR SET status = 'Accept' WHERE connectionId = :'usr' AND status = 'Request' RETURNING userId;
+
+\echo == update_name
+EXPLAIN ANALYZE UPDATE USR SET name = name WHERE userId = :'usr';
+
+\echo == update_work_record
+EXPLAIN ANALYZE UPDATE WORK_EXPR SET company = company, location = 'x', endDate = CAST('2020-01-01' AS date)
+WHERE userId = :'usr' AND company = 'x' AND role = 'x' AND startDate = CAST('2016-01-01' AS date);
+ROLLBACK;